@@ -0,0 +1,28 @@
+#!/bin/sh
+# 依次以loadtest profile启动rest、hateoas、security、oauth2四个模块并施加相同的负载，逐层对比开销
+# 用法：./run-all.sh [--threads=50] [--warmup=10] [--duration=30]
+set -e
+cd "$(dirname "$0")/.."
+
+(cd api-load-test && mvn -q package)
+
+for module in rest hateoas security oauth2; do
+    (cd $module-api-demo && mvn -q package -DskipTests)
+    jar=$module-api-demo/target/$module-api-demo-0.0.1-SNAPSHOT.jar
+    case $module in
+        rest) port=8010 ;;
+        hateoas) port=8020 ;;
+        security) port=8030 ;;
+        oauth2) port=8040; jar=oauth2-api-demo/target/oauth2-api-demo-0.0.1-SNAPSHOT-exec.jar ;;
+    esac
+
+    java -jar "$jar" --spring.profiles.active=loadtest > "api-load-test/target/$module.log" 2>&1 &
+    pid=$!
+    until curl -s -o /dev/null "http://localhost:$port/"; do
+        sleep 1
+    done
+
+    java -jar api-load-test/target/load-test.jar --target=$module "$@" || true
+    kill $pid
+    wait $pid 2>/dev/null || true
+done
@@ -0,0 +1,140 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按LoadTarget的认证方式访问各个接口，按接口分别记录延迟（微秒）和失败次数，所有线程共用
+ */
+class LoadClient {
+
+    private static final String ADMIN = basic("admin", "admin");
+    private static final String IOS_CLIENT = basic("ios-client", "ios"); // oauth2-api-demo的clients.json
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LoadTarget target;
+    private final String baseUrl;
+    private final Map<String, Recorder> recorders = new LinkedHashMap<>();
+    private final Map<String, LongAdder> errors = new LinkedHashMap<>();
+
+    LoadClient(LoadTarget target, String baseUrl) {
+        this.target = target;
+        this.baseUrl = baseUrl;
+        for (String endpoint : new String[]{"signup", "token", "get", "me", "update", "list", "delete"}) {
+            recorders.put(endpoint, new Recorder(3));
+            errors.put(endpoint, new LongAdder());
+        }
+    }
+
+    /**
+     * 一个用户的完整流程：注册、（获取token）、查询、me、修改、列表、删除，读多写少
+     */
+    void session(String username) throws IOException {
+        if (call("signup", "POST", "/api/accounts/add", null, "application/json",
+                "{\"username\":\"" + username + "\",\"email\":\"" + username + "@example.com\"}") == null)
+            return;
+
+        String userAuthorization = basic(username, username); // 密码没有保存时与用户名相同
+        if (target == LoadTarget.OAUTH2) {
+            String response = call("token", "POST", "/oauth/token", IOS_CLIENT, "application/x-www-form-urlencoded",
+                    "grant_type=password&username=" + username + "&password=" + username);
+            userAuthorization = response != null ? "Bearer " + objectMapper.readTree(response).get("access_token").asText() : null;
+        }
+        String adminAuthorization = target == LoadTarget.SECURITY ? ADMIN : null; // oauth2-api-demo只有me需要token
+
+        for (int i = 0; i < 3; i++) {
+            call("get", "GET", "/api/accounts/" + username, adminAuthorization, null, null);
+            if (target.hasMe && userAuthorization != null)
+                call("me", "GET", "/api/accounts/me", userAuthorization, null, null);
+        }
+        call("update", "PUT", "/api/accounts/update", adminAuthorization, "application/json",
+                "{\"username\":\"" + username + "\",\"email\":\"" + username + "@example.org\",\"age\":30}");
+        if (target.hasList)
+            call("list", "GET", "/api/accounts/?size=20", adminAuthorization, null, null);
+        call("delete", "DELETE", "/api/accounts/" + username, adminAuthorization, null, null);
+    }
+
+    /**
+     * 返回响应内容，状态码不是2xx时记为失败并返回null
+     */
+    private String call(String endpoint, String method, String path, String authorization, String contentType, String body) throws IOException {
+        long start = System.nanoTime();
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setRequestProperty("Accept", "application/json");
+        if (authorization != null)
+            connection.setRequestProperty("Authorization", authorization);
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", contentType);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        int status = connection.getResponseCode();
+        String response;
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            response = read(in); // 读完响应以便复用连接
+        }
+        if (status / 100 != 2) {
+            errors.get(endpoint).increment();
+            return null;
+        }
+        recorders.get(endpoint).recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        return response;
+    }
+
+    /**
+     * 丢弃之前记录的数据（预热阶段）
+     */
+    void reset() {
+        recorders.values().forEach(Recorder::reset);
+        errors.values().forEach(LongAdder::reset);
+    }
+
+    void report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%-8s %9s %7s %9s %9s %9s %9s %9s%n", "endpoint", "requests", "errors", "req/s", "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)");
+        recorders.forEach((endpoint, recorder) -> {
+            Histogram histogram = recorder.getIntervalHistogram();
+            long failed = errors.get(endpoint).sum();
+            if (histogram.getTotalCount() == 0 && failed == 0)
+                return; // 当前模块没有这个接口
+            System.out.printf("%-8s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n", endpoint, histogram.getTotalCount(), failed,
+                    histogram.getTotalCount() / seconds,
+                    histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMaxValue() / 1000.0);
+        });
+    }
+
+    private static String read(InputStream in) throws IOException {
+        if (in == null)
+            return "";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) >= 0)
+            out.write(buffer, 0, n);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String basic(String username, String password) {
+        return "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+    }
+
+}
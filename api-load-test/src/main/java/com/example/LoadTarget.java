@@ -0,0 +1,24 @@
+package com.example;
+
+/**
+ * 被测的模块，每个模块在上一个的基础上增加一层：HATEOAS、Basic认证、OAuth2。
+ * 模块中没有的接口不在负载中出现
+ */
+enum LoadTarget {
+
+    REST(8010, false, false),
+    HATEOAS(8020, true, false),
+    SECURITY(8030, true, true),
+    OAUTH2(8040, true, true);
+
+    final int defaultPort;
+    final boolean hasList; // GET /api/accounts/
+    final boolean hasMe; // GET /api/accounts/me
+
+    LoadTarget(int defaultPort, boolean hasList, boolean hasMe) {
+        this.defaultPort = defaultPort;
+        this.hasList = hasList;
+        this.hasMe = hasMe;
+    }
+
+}
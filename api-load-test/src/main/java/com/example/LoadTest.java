@@ -0,0 +1,66 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 对一个已经启动的模块施加负载（模块以loadtest profile启动时不需要MySQL）：
+ * java -jar target/load-test.jar --target=oauth2 [--url=http://localhost:8040] [--threads=50] [--warmup=10] [--duration=30]
+ * 每个线程循环执行LoadClient.session，预热结束后开始统计，最后按接口输出吞吐量和p50/p99/p999延迟
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("="))
+                throw new IllegalArgumentException("参数格式为--name=value：" + arg);
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+
+        LoadTarget target = LoadTarget.valueOf(options.getOrDefault("target", "rest").toUpperCase(Locale.ROOT));
+        String url = options.getOrDefault("url", "http://localhost:" + target.defaultPort);
+        int threads = Integer.parseInt(options.getOrDefault("threads", "50"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+
+        System.setProperty("http.maxConnections", String.valueOf(threads)); // 每个线程保持自己的keep-alive连接
+        LoadClient client = new LoadClient(target, url);
+        AtomicLong failures = new AtomicLong();
+        long stopAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmup + duration);
+
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            String prefix = "lt" + i + "x"; // 用户名最长20个字符
+            Thread worker = new Thread(() -> {
+                long sequence = 0;
+                while (System.nanoTime() < stopAt) {
+                    try {
+                        client.session(prefix + sequence++);
+                    } catch (Exception e) {
+                        failures.incrementAndGet(); // 连接被拒绝等，不计入任何接口
+                    }
+                }
+            }, "load-" + i);
+            worker.start();
+            workers.add(worker);
+        }
+
+        System.out.printf("%s %s: %d threads, warmup %ds, duration %ds%n", target.name().toLowerCase(Locale.ROOT), url, threads, warmup, duration);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(warmup));
+        client.reset();
+        long start = System.nanoTime();
+        for (Thread worker : workers)
+            worker.join();
+
+        client.report(System.nanoTime() - start);
+        if (failures.get() > 0)
+            System.out.println("I/O failures: " + failures.get());
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.example;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 批量创建账户：一次查询找出已存在的用户名，其余账户通过JDBC批量insert写入，
+ * id由Account上的pooled序列在内存中分配，不需要每插入一行就访问一次数据库。
+ * 用户名按小写比较，与MySQL默认的排序规则一致；批量写入时仍违反唯一约束（查询之后其他请求插入了同名用户）则整批回滚，改为逐个插入。
+ * 批量删除账户：按用户名分段执行delete ... where username in (...)，不加载实体
+ */
+@Service
+public class AccountBatchService {
+
+    static final int MAX_ACCOUNTS = 10000;
+    static final int MAX_DELETE_USERNAMES = 100000;
+
+    private static final int DELETE_CHUNK_SIZE = 1000; // 每条delete语句中in列表的长度
+
+    private static final int FLUSH_INTERVAL = 50; // 与hibernate.jdbc.batch_size一致
+    private static final int MAX_USERNAME_LENGTH = 20;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private AccountUsernameConstraint accountUsernameConstraint;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    public List<AccountBatchResult> create(List<Account> accounts) {
+        if (accounts.size() > MAX_ACCOUNTS)
+            throw new IllegalArgumentException("一次最多创建" + MAX_ACCOUNTS + "个用户！");
+
+        Set<String> usernames = new LinkedHashSet<>(accounts.size() * 2);
+        for (Account account : accounts) {
+            if (isValid(account.getUsername()))
+                usernames.add(account.getUsername());
+        }
+        Set<String> taken = new HashSet<>(usernames.size() * 2);
+        if (!usernames.isEmpty()) {
+            for (String username : accountRepository.findUsernamesIn(usernames)) // 一次查询找出所有已存在的用户名
+                taken.add(normalize(username));
+        }
+
+        AccountBatchResult[] results = new AccountBatchResult[accounts.size()];
+        List<Integer> pending = new ArrayList<>(accounts.size());
+        for (int i = 0; i < accounts.size(); i++) {
+            String username = accounts.get(i).getUsername();
+            if (!isValid(username))
+                results[i] = new AccountBatchResult(i, username, AccountBatchResult.Status.INVALID, null);
+            else if (!taken.add(normalize(username)))
+                results[i] = new AccountBatchResult(i, username, AccountBatchResult.Status.DUPLICATE, null);
+            else
+                pending.add(i);
+        }
+
+        try {
+            insert(accounts, pending);
+            for (int i : pending)
+                results[i] = created(i, accounts.get(i));
+        } catch (RuntimeException e) {
+            if (!isConstraintViolation(e))
+                throw e;
+            for (int i : pending) { // 每个账户一个事务，冲突的账户不影响其他账户
+                try {
+                    insert(accounts, Collections.singletonList(i));
+                    results[i] = created(i, accounts.get(i));
+                } catch (RuntimeException rowException) {
+                    if (!accountUsernameConstraint.isViolatedBy(rowException))
+                        throw rowException; // 不是用户名被占用，例如主键冲突，由AccountRestControllerAdvice处理
+                    results[i] = new AccountBatchResult(i, accounts.get(i).getUsername(), AccountBatchResult.Status.DUPLICATE, null);
+                }
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * 在一个事务中写入accounts中下标为indexes的账户，违反唯一约束时整个事务回滚
+     */
+    private void insert(List<Account> accounts, List<Integer> indexes) {
+        new TransactionTemplate(transactionManager).execute(status -> {
+            entityManager.unwrap(Session.class).setCacheMode(CacheMode.IGNORE); // 批量写入的账户不放入二级缓存
+            int pending = 0;
+            for (int i : indexes) {
+                Account account = accounts.get(i);
+                account.setId(0);
+                entityManager.persist(account); // id在persist时分配，insert在flush时批量执行
+                if (++pending % FLUSH_INTERVAL == 0) {
+                    entityManager.flush();
+                    entityManager.clear(); // 已写入的实体不再需要留在持久化上下文中
+                }
+            }
+            entityManager.flush();
+            entityManager.clear();
+            return null;
+        });
+    }
+
+    @Transactional
+    public int delete(Collection<String> usernames) {
+        if (usernames.size() > MAX_DELETE_USERNAMES)
+            throw new IllegalArgumentException("一次最多删除" + MAX_DELETE_USERNAMES + "个用户！");
+
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(usernames));
+        int deleted = 0;
+        for (int from = 0; from < distinct.size(); from += DELETE_CHUNK_SIZE) {
+            int to = Math.min(from + DELETE_CHUNK_SIZE, distinct.size());
+            deleted += accountRepository.deleteByUsernameIn(distinct.subList(from, to)); // 所有分段在同一个事务中，要么全部删除，要么全部回滚
+        }
+        return deleted;
+    }
+
+    private static AccountBatchResult created(int index, Account account) {
+        return new AccountBatchResult(index, account.getUsername(), AccountBatchResult.Status.CREATED, account.getId());
+    }
+
+    private static String normalize(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isConstraintViolation(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataIntegrityViolationException || cause instanceof ConstraintViolationException)
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isValid(String username) {
+        return username != null && !username.isEmpty() && username.length() <= MAX_USERNAME_LENGTH;
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.example;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Account的强ETag，由id和version组成，不需要序列化响应内容就能比较。
+ * GET请求通过WebRequest.checkNotModified处理If-None-Match，修改请求通过checkIfMatch处理If-Match
+ */
+final class AccountETags {
+
+    private AccountETags() {
+    }
+
+    static String of(Account account) {
+        return "\"" + account.getId() + "-" + account.getVersion() + "\"";
+    }
+
+    /**
+     * If-Match中没有与当前版本一致的ETag时抛出OptimisticLockingFailureException，返回412；没有If-Match头时不检查
+     */
+    static void checkIfMatch(WebRequest webRequest, Account account) {
+        String ifMatch = webRequest.getHeader(HttpHeaders.IF_MATCH);
+        if (ifMatch == null)
+            return;
+
+        String etag = of(account);
+        for (String candidate : StringUtils.commaDelimitedListToStringArray(ifMatch)) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || candidate.equals(etag)) // 弱ETag（W/前缀）按强比较规则不匹配
+                return;
+        }
+        throw new OptimisticLockingFailureException("用户已被修改！");
+    }
+
+    static void setETag(WebRequest webRequest, Account account) {
+        if (!(webRequest instanceof NativeWebRequest))
+            return;
+        HttpServletResponse response = ((NativeWebRequest) webRequest).getNativeResponse(HttpServletResponse.class);
+        if (response != null)
+            response.setHeader(HttpHeaders.ETAG, of(account));
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+/**
+ * Account的id由t_account_seq按50个一组预先分配（见Account）。原来使用自增主键的MySQL数据库中已有账户，
+ * ddl-auto=update新建的t_account_seq从1开始，新账户的id会与已有的id冲突。
+ * 启动时（建表之后）检查：t_account_seq分配的下一组id不大于max(id)时调整到max(id)之后；调整后仍然落后时启动失败。
+ * MySQL上t_account_seq是一张表（next_val列），H2上是一个序列，其他数据库不检查
+ */
+@Component
+public class AccountIdSequence {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountIdSequence.class);
+
+    private static final long INCREMENT_SIZE = 50; // 与Account中的increment_size一致
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AccountIdSequence(DataSource dataSource, EntityManagerFactory entityManagerFactory) throws MetaDataAccessException { // 依赖EntityManagerFactory，保证ddl-auto已经执行
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        String product = (String) JdbcUtils.extractDatabaseMetaData(dataSource, "getDatabaseProductName");
+        if ("MySQL".equals(product))
+            checkTable();
+        else if ("H2".equals(product))
+            checkSequence();
+        else
+            logger.warn("不支持检查{}上的t_account_seq，已有账户时需保证其分配的id大于max(t_account.id)", product);
+    }
+
+    /**
+     * 表中的next_val即下一组的最大id，这一组从next_val - INCREMENT_SIZE + 1开始
+     */
+    private void checkTable() {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            Long maxId = jdbcTemplate.queryForObject("select max(id) from t_account", Long.class);
+            Long next = jdbcTemplate.queryForObject("select max(next_val) from t_account_seq", Long.class);
+            if (maxId == null || next != null && next - INCREMENT_SIZE >= maxId)
+                return;
+            long seeded = maxId + INCREMENT_SIZE;
+            int updated = next == null
+                    ? jdbcTemplate.update("insert into t_account_seq (next_val) values (?)", seeded)
+                    : jdbcTemplate.update("update t_account_seq set next_val = ? where next_val = ?", seeded, next); // 其他实例同时调整时重新检查
+            if (updated == 1) {
+                logger.warn("t_account_seq落后于t_account中已有的id（{}），已从{}调整为{}", maxId, next, seeded);
+                return;
+            }
+        }
+        throw new IllegalStateException("t_account_seq落后于t_account中已有的id，无法调整，请执行README中的t_account_seq初始化语句");
+    }
+
+    /**
+     * 序列的current_value是上一次分配的一组的最大id，下一组从current_value + 1开始
+     */
+    private void checkSequence() {
+        Long maxId = jdbcTemplate.queryForObject("select max(id) from t_account", Long.class);
+        Long current = jdbcTemplate.queryForObject("select current_value from information_schema.sequences where sequence_name = 'T_ACCOUNT_SEQ'", Long.class);
+        if (maxId == null || current >= maxId)
+            return;
+        jdbcTemplate.execute("alter sequence t_account_seq restart with " + (maxId + INCREMENT_SIZE));
+        logger.warn("t_account_seq落后于t_account中已有的id（{}），已调整为{}", maxId, maxId + INCREMENT_SIZE);
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.example;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 记录AccountController每个接口（controller.{方法名}）和AccountRepository每个查询（repository.{方法名}）的耗时。
+ * 接口返回CompletableFuture时记录到执行完成为止，包括在AccountExecutor中排队的时间
+ */
+@Aspect
+@Component
+public class AccountLatencyAspect {
+
+    private final AccountLatencyMetrics accountLatencyMetrics;
+    private final ConcurrentMap<Method, AccountLatencyMetrics.Timer> timers = new ConcurrentHashMap<>();
+
+    public AccountLatencyAspect(AccountLatencyMetrics accountLatencyMetrics) {
+        this.accountLatencyMetrics = accountLatencyMetrics;
+    }
+
+    @Around("within(com.example.AccountController)")
+    public Object controller(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time("controller.", joinPoint);
+    }
+
+    @Around("this(com.example.AccountRepository)")
+    public Object repository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time("repository.", joinPoint);
+    }
+
+    private Object time(String prefix, ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!accountLatencyMetrics.isEnabled())
+            return joinPoint.proceed();
+
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        AccountLatencyMetrics.Timer timer = timers.computeIfAbsent(method, m -> accountLatencyMetrics.timer(prefix + m.getName()));
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            timer.record(start);
+            throw e;
+        }
+
+        if (result instanceof CompletableFuture) {
+            ((CompletableFuture<?>) result).whenComplete((value, e) -> timer.record(start)); // 仍然返回原来的future，异常不会被包装
+        } else {
+            timer.record(start);
+        }
+        return result;
+    }
+
+}
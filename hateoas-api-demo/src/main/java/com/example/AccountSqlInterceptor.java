@@ -0,0 +1,48 @@
+package com.example;
+
+import org.apache.tomcat.jdbc.pool.interceptor.AbstractQueryReport;
+
+/**
+ * tomcat-jdbc连接池的拦截器，把执行的每条SQL及其耗时交给AccountSqlStatistics，
+ * 通过spring.datasource.tomcat.jdbc-interceptors配置
+ */
+public class AccountSqlInterceptor extends AbstractQueryReport {
+
+    public AccountSqlInterceptor() {
+        this.threshold = 0; // 是否为慢查询由AccountSqlStatistics判断
+    }
+
+    @Override
+    protected String reportQuery(String query, Object[] args, String name, long start, long delta) {
+        String sql = super.reportQuery(query, args, name, start, delta);
+        AccountSqlStatistics.statement(sql, delta);
+        return sql;
+    }
+
+    @Override
+    protected String reportSlowQuery(String query, Object[] args, String name, long start, long delta) {
+        String sql = super.reportSlowQuery(query, args, name, start, delta);
+        AccountSqlStatistics.statement(sql, delta);
+        return sql;
+    }
+
+    @Override
+    protected String reportFailedQuery(String query, Object[] args, String name, long start, Throwable t) {
+        String sql = super.reportFailedQuery(query, args, name, start, t);
+        AccountSqlStatistics.statement(sql, System.currentTimeMillis() - start);
+        return sql;
+    }
+
+    @Override
+    protected void prepareStatement(String sql, long time) {
+    }
+
+    @Override
+    protected void prepareCall(String query, long time) {
+    }
+
+    @Override
+    public void closeInvoked() {
+    }
+
+}
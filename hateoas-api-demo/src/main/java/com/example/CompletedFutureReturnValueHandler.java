@@ -0,0 +1,125 @@
+package com.example;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ResolvableType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.support.AsyncHandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandlerComposite;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 处理方法返回时已经完成的CompletableFuture（direct模式，或线程池在返回之前已经执行完）按同步返回值处理：
+ * 不调用startAsync，也不再经过一次ASYNC分派，否则每个请求都要重新执行一遍过滤器链（包括Spring Security）。
+ * 未完成的仍交给Spring MVC的异步处理
+ */
+@Component
+public class CompletedFutureReturnValueHandler implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (bean instanceof RequestMappingHandlerAdapter) {
+            RequestMappingHandlerAdapter adapter = (RequestMappingHandlerAdapter) bean;
+            List<HandlerMethodReturnValueHandler> handlers = new ArrayList<>(adapter.getReturnValueHandlers());
+            HandlerMethodReturnValueHandlerComposite delegate = new HandlerMethodReturnValueHandlerComposite().addHandlers(handlers);
+            handlers.add(0, new Handler(delegate)); // 排在Spring MVC处理CompletionStage的DeferredResultMethodReturnValueHandler之前
+            adapter.setReturnValueHandlers(handlers);
+        }
+        return bean;
+    }
+
+    /**
+     * HandlerMethodReturnValueHandlerComposite只用AsyncHandlerMethodReturnValueHandler处理异步返回值，因此需要实现该接口
+     */
+    private static final class Handler implements AsyncHandlerMethodReturnValueHandler {
+
+        private final HandlerMethodReturnValueHandler delegate;
+
+        Handler(HandlerMethodReturnValueHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean supportsReturnType(MethodParameter returnType) {
+            return CompletableFuture.class.isAssignableFrom(returnType.getParameterType());
+        }
+
+        @Override
+        public boolean isAsyncReturnValue(Object returnValue, MethodParameter returnType) {
+            return returnValue instanceof CompletableFuture;
+        }
+
+        @Override
+        public void handleReturnValue(Object returnValue, MethodParameter returnType, ModelAndViewContainer mavContainer,
+                                      NativeWebRequest webRequest) throws Exception {
+            CompletableFuture<?> future = (CompletableFuture<?>) returnValue;
+            if (future == null || !future.isDone()) {
+                delegate.handleReturnValue(returnValue, returnType, mavContainer, webRequest);
+                return;
+            }
+
+            Object value;
+            try {
+                value = future.getNow(null);
+            } catch (CompletionException e) { // 与同步执行时一样，由AccountRestControllerAdvice处理原始异常
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception)
+                    throw (Exception) cause;
+                if (cause instanceof Error)
+                    throw (Error) cause;
+                throw e;
+            }
+
+            if (value == null && webRequest instanceof ServletWebRequest && ((ServletWebRequest) webRequest).isNotModified()) {
+                mavContainer.setRequestHandled(true); // 304
+                return;
+            }
+            delegate.handleReturnValue(value, new ResultParameter(returnType, value), mavContainer, webRequest);
+        }
+
+    }
+
+    /**
+     * 把返回值类型从CompletableFuture<T>换成T，供@ResponseBody等处理器选择消息转换器
+     */
+    private static final class ResultParameter extends MethodParameter {
+
+        private final Class<?> type;
+        private final Type genericType;
+
+        ResultParameter(MethodParameter original, Object value) {
+            super(original);
+            ResolvableType resultType = ResolvableType.forMethodParameter(original).getGeneric(0);
+            this.type = value != null ? value.getClass() : resultType.resolve(Object.class);
+            this.genericType = resultType.getType();
+        }
+
+        @Override
+        public Class<?> getParameterType() {
+            return type;
+        }
+
+        @Override
+        public Type getGenericParameterType() {
+            return genericType;
+        }
+
+    }
+
+}
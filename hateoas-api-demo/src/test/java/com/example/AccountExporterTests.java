@@ -0,0 +1,44 @@
+package com.example;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * loadtest profile使用H2，导出不能依赖MySQL驱动特有的fetch size
+ */
+@RunWith(SpringRunner.class)
+@ActiveProfiles("loadtest")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class AccountExporterTests {
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private AccountRepository accountRepository;
+
+	@Test
+	public void exportsOneLinePerAccountOnH2() {
+		accountRepository.deleteAll();
+		for (String username : new String[]{"zhangsan", "lisi", "wangwu"})
+			accountRepository.save(new Account(username, username, null, null, null, null, null));
+
+		ResponseEntity<String> response = restTemplate.getForEntity("/api/accounts/export", String.class);
+
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		String[] lines = response.getBody().split("\n");
+		assertEquals(3, lines.length);
+		assertTrue(lines[0].startsWith("{"));
+	}
+
+}
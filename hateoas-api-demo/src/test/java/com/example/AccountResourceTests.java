@@ -0,0 +1,42 @@
+package com.example;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.hateoas.Link;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
+import static org.springframework.hateoas.mvc.ControllerLinkBuilder.methodOn;
+
+public class AccountResourceTests {
+
+	@Before
+	public void setUp() {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader("X-Forwarded-Proto", "https");
+		request.addHeader("X-Forwarded-Host", "api.example.com");
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+	}
+
+	@After
+	public void tearDown() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Test
+	public void linksMatchControllerLinkBuilder() {
+		Account account = new Account("zhang san", null, null, null, null, null, null);
+		AccountResource resource = new AccountResource(account);
+
+		assertEquals(linkTo(methodOn(AccountController.class).add(null)).withRel("add"), resource.getLink("add"));
+		assertEquals(linkTo(methodOn(AccountController.class).account("zhang san", null)).withSelfRel(), resource.getLink(Link.REL_SELF));
+		assertEquals(linkTo(methodOn(AccountController.class).update(null, null)).withRel("update"), resource.getLink("update"));
+		assertEquals(linkTo(methodOn(AccountController.class).delete("zhang san")).withRel("delete"), resource.getLink("delete"));
+		assertEquals("https://api.example.com/api/accounts/zhang%20san", resource.getId().getHref());
+	}
+
+}
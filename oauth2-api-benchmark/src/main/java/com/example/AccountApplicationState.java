@@ -0,0 +1,44 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * 以loadtest profile（内嵌H2数据库）启动oauth2-api-demo，每个fork只启动一次，基准测试从中取出被测的bean
+ */
+@State(Scope.Benchmark)
+public class AccountApplicationState {
+
+    static final String USERNAME = "zhangsan";
+
+    private ConfigurableApplicationContext context;
+
+    @Setup
+    public void start() {
+        context = new SpringApplicationBuilder(Application.class).run(
+                "--spring.profiles.active=loadtest", // 内存数据库，见oauth2-api-demo的application-loadtest.properties
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN");
+
+        bean(AccountRepository.class).save(account());
+    }
+
+    @TearDown
+    public void stop() {
+        context.close();
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    static Account account() {
+        return new Account(USERNAME, null, "zhangsan@example.com", "zhang", "san", 25, (byte) 1);
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.example;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * benchmarks.jar的入口，参数与JMH命令行相同。
+ * 没有指定-rf/-rff时结果以JSON格式写到jmh-result.json，便于不同提交之间对比
+ */
+public class AccountBenchmarks {
+
+    static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue())
+            options.resultFormat(ResultFormatType.JSON);
+        if (!commandLine.getResult().hasValue())
+            options.result(DEFAULT_RESULT_FILE);
+
+        new Runner(options.build()).run();
+    }
+
+}
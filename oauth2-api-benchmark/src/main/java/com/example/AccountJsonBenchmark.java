@@ -0,0 +1,83 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.Resources;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用应用中MappingJackson2HttpMessageConverter使用的ObjectMapper序列化响应：
+ * Account、AccountResource和列表页Resources<AccountResource>（本模块没有启用HAL，链接按links数组输出）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AccountJsonBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    private ObjectMapper objectMapper;
+
+    private Account account;
+    private AccountResource accountResource;
+    private Resources<AccountResource> resources;
+
+    @Setup
+    public void setUp(AccountApplicationState application) {
+        objectMapper = application.bean(ObjectMapper.class);
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest("GET", "/api/accounts/")));
+        try {
+            account = AccountApplicationState.account();
+            account.setId(1L);
+            accountResource = new AccountResource(account);
+
+            List<AccountResource> page = new ArrayList<>(PAGE_SIZE);
+            for (int i = 1; i <= PAGE_SIZE; i++) {
+                Account item = new Account("user" + i, null, "user" + i + "@example.com", "user", String.valueOf(i), 20 + i, (byte) (i % 2));
+                item.setId(i);
+                page.add(new AccountResource(item));
+            }
+            resources = new Resources<>(page);
+            resources.add(new Link("http://localhost/api/accounts/?size=" + PAGE_SIZE));
+            resources.add(new Link("http://localhost/api/accounts/?after=" + PAGE_SIZE + "&size=" + PAGE_SIZE, Link.REL_NEXT));
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    @Benchmark
+    public byte[] account() throws Exception {
+        return objectMapper.writeValueAsBytes(account);
+    }
+
+    @Benchmark
+    public byte[] accountResource() throws Exception {
+        return objectMapper.writeValueAsBytes(accountResource);
+    }
+
+    @Benchmark
+    public byte[] accountResources() throws Exception {
+        return objectMapper.writeValueAsBytes(resources);
+    }
+
+}
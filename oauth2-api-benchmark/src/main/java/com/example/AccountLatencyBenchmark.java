@@ -0,0 +1,58 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AccountLatencyMetrics每次记录的开销，包括读取System.nanoTime()；
+ * contended为4个线程同时记录到同一个Timer。加上-prof gc可以确认记录时不分配内存
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountLatencyBenchmark {
+
+    private AccountLatencyMetrics enabled;
+    private AccountLatencyMetrics disabled;
+    private AccountLatencyMetrics.Timer timer;
+
+    @Setup
+    public void setUp() {
+        enabled = new AccountLatencyMetrics(true);
+        disabled = new AccountLatencyMetrics(false);
+        timer = enabled.timer("benchmark");
+    }
+
+    @Benchmark
+    public void record() {
+        if (enabled.isEnabled())
+            timer.record(System.nanoTime());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void contended() {
+        if (enabled.isEnabled())
+            timer.record(System.nanoTime());
+    }
+
+    @Benchmark
+    public boolean disabled() {
+        return disabled.isEnabled();
+    }
+
+}
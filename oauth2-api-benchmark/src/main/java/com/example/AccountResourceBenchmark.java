@@ -0,0 +1,72 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.mvc.ControllerLinkBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 构建带链接的AccountResource，每次调用模拟一个新请求。
+ * linkTo是AccountLinks之前每次按方法调用解析映射的写法，作为对比
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AccountResourceBenchmark {
+
+    private Account account;
+
+    @Setup
+    public void setUp() {
+        account = AccountApplicationState.account();
+        account.setId(1L);
+    }
+
+    @Benchmark
+    public AccountResource accountLinks() {
+        RequestContextHolder.setRequestAttributes(newRequest());
+        try {
+            return new AccountResource(account);
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    @Benchmark
+    public List<Link> linkTo() {
+        RequestContextHolder.setRequestAttributes(newRequest());
+        try {
+            List<Link> links = new ArrayList<>(4);
+            links.add(ControllerLinkBuilder.linkTo(ControllerLinkBuilder.methodOn(AccountController.class).add(null)).withRel("add"));
+            links.add(ControllerLinkBuilder.linkTo(ControllerLinkBuilder.methodOn(AccountController.class).account(account.getUsername(), null)).withSelfRel());
+            links.add(ControllerLinkBuilder.linkTo(ControllerLinkBuilder.methodOn(AccountController.class).update(null, null)).withRel("update"));
+            links.add(ControllerLinkBuilder.linkTo(ControllerLinkBuilder.methodOn(AccountController.class).delete(account.getUsername())).withRel("delete"));
+            return links;
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    private static ServletRequestAttributes newRequest() {
+        return new ServletRequestAttributes(new MockHttpServletRequest("GET", "/api/accounts/" + AccountApplicationState.USERNAME));
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 错误响应的生成：由AccountRestControllerAdvice转换异常，再用应用的ObjectMapper序列化。
+ * 异常在setUp中创建，不计入填充调用栈的开销
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AccountRestControllerAdviceBenchmark {
+
+    private AccountRestControllerAdvice advice;
+    private ObjectMapper objectMapper;
+
+    private IllegalArgumentException notFound;
+    private DataIntegrityViolationException duplicateKey;
+
+    @Setup
+    public void setUp(AccountApplicationState application) {
+        advice = application.bean(AccountRestControllerAdvice.class);
+        objectMapper = application.bean(ObjectMapper.class);
+
+        notFound = new IllegalArgumentException("用户不存在！");
+        duplicateKey = new DataIntegrityViolationException("could not execute statement",
+                new RuntimeException(new SQLException("Unique index or primary key violation", "23505", 23505))); // H2的唯一约束冲突，与hibernate包装后的层次相同
+    }
+
+    @Benchmark
+    public byte[] illegalArgument() throws Exception {
+        return objectMapper.writeValueAsBytes(advice.illegalArgumentExceptionHandler(notFound));
+    }
+
+    @Benchmark
+    public byte[] duplicateKey() throws Exception {
+        return objectMapper.writeValueAsBytes(advice.dataIntegrityViolationExceptionHandler(duplicateKey).getBody());
+    }
+
+}
@@ -0,0 +1,143 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.OAuth2Request;
+import org.springframework.security.oauth2.provider.token.TokenStore;
+import org.springframework.security.oauth2.provider.token.store.JwtAccessTokenConverter;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 资源服务器校验token和授权服务器保存token的开销：
+ * jdbc - AccountTokenStore直接读写数据库
+ * cached - account.token-store.cache.enabled=true时实际使用的TokenStore
+ * jwt - account.token-store.type=jwt时的签发和校验，不访问数据库
+ * writeBehind - account.token-store.type=write-behind时的签发，只修改内存，由写入线程批量写入数据库；
+ *   队列满时签发等待写入线程，因此持续运行时反映的是批量写入的吞吐
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AccountTokenStoreBenchmark {
+
+    private static final long VALIDITY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private AccountTokenStore accountTokenStore;
+    private TokenStore cachingTokenStore;
+    private JwtAccessTokenConverter jwtAccessTokenConverter;
+    private TokenStore jwtTokenStore;
+    private WriteBehindTokenStore writeBehindTokenStore;
+
+    private OAuth2Authentication authentication;
+    private OAuth2Authentication writeAuthentication; // 写入测试使用另一个用户，不与预先保存的token冲突
+    private OAuth2AccessToken token;
+    private OAuth2AccessToken jwt;
+
+    @Setup
+    public void setUp(AccountApplicationState application) throws Exception {
+        accountTokenStore = application.bean(AccountTokenStore.class);
+        cachingTokenStore = application.bean(TokenStore.class);
+
+        jwtAccessTokenConverter = new JwtAccessTokenConverter(); // 与TokenStoreConfig中的配置相同
+        jwtAccessTokenConverter.setSigningKey("benchmark-signing-key-0123456789ab"); // 与TokenStoreConfig的要求一致，至少32字节
+        jwtAccessTokenConverter.setAccessTokenConverter(new AccountAccessTokenConverter());
+        jwtAccessTokenConverter.afterPropertiesSet();
+        jwtTokenStore = new JwtAccountTokenStore(jwtAccessTokenConverter, accountTokenStore);
+        writeBehindTokenStore = new WriteBehindTokenStore(accountTokenStore, accountTokenStore, application.bean(DataSource.class),
+                application.bean(AccountLatencyMetrics.class), 10000, 500, 0, 1000); // 与application.properties中的配置相同，队列较小
+
+        OAuth2Request request = new OAuth2Request(Collections.<String, String>emptyMap(), "ios-client",
+                AuthorityUtils.createAuthorityList("IOS_USER"), true, new HashSet<>(Arrays.asList("read", "write")),
+                Collections.singleton("api-accounts"), null, null, null);
+        authentication = new OAuth2Authentication(request, new UsernamePasswordAuthenticationToken(
+                AccountApplicationState.USERNAME, "N/A", AuthorityUtils.createAuthorityList("USER")));
+        writeAuthentication = new OAuth2Authentication(request, new UsernamePasswordAuthenticationToken(
+                "lisi", "N/A", AuthorityUtils.createAuthorityList("USER")));
+
+        token = newToken();
+        accountTokenStore.storeAccessToken(token, authentication);
+        jwt = jwtAccessTokenConverter.enhance(newToken(), authentication);
+    }
+
+    @Benchmark
+    public OAuth2AccessToken jdbcReadAccessToken() {
+        return accountTokenStore.readAccessToken(token.getValue());
+    }
+
+    @Benchmark
+    public OAuth2Authentication jdbcReadAuthentication() {
+        return accountTokenStore.readAuthentication(token.getValue());
+    }
+
+    @Benchmark
+    public OAuth2AccessToken jdbcStoreAndRemoveAccessToken() {
+        OAuth2AccessToken stored = newToken();
+        accountTokenStore.storeAccessToken(stored, writeAuthentication);
+        accountTokenStore.removeAccessToken(stored); // 同一用户和客户端只能有一个token，删除后下次才能再插入
+        return stored;
+    }
+
+    @Benchmark
+    public OAuth2AccessToken writeBehindStoreAccessToken() {
+        OAuth2AccessToken stored = newToken();
+        writeBehindTokenStore.storeAccessToken(stored, writeAuthentication); // 替换上一次签发的token，删除等待提交，因此不再显式删除
+        return stored;
+    }
+
+    @Benchmark
+    public OAuth2Authentication writeBehindReadAuthentication() {
+        return writeBehindTokenStore.readAuthentication(token.getValue());
+    }
+
+    @Benchmark
+    public OAuth2Authentication cachedReadAuthentication() {
+        return cachingTokenStore.readAuthentication(token.getValue());
+    }
+
+    @Benchmark
+    public OAuth2Authentication jwtReadAuthentication() {
+        return jwtTokenStore.readAuthentication(jwt.getValue());
+    }
+
+    @Benchmark
+    public OAuth2AccessToken jwtEnhance() {
+        return jwtAccessTokenConverter.enhance(newToken(), authentication);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        writeBehindTokenStore.destroy();
+    }
+
+    private static DefaultOAuth2AccessToken newToken() {
+        DefaultOAuth2AccessToken token = new DefaultOAuth2AccessToken(UUID.randomUUID().toString());
+        token.setExpiration(new Date(System.currentTimeMillis() + VALIDITY_MILLIS));
+        token.setScope(new HashSet<>(Arrays.asList("read", "write")));
+        return token;
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 密码模式获取token时的用户查询，数据库为内嵌H2，查询按natural id走二级缓存
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AccountUserDetailsBenchmark {
+
+    private AccountUserDetailsService accountUserDetailsService;
+
+    @Setup
+    public void setUp(AccountApplicationState application) {
+        accountUserDetailsService = application.bean(AccountUserDetailsService.class);
+    }
+
+    @Benchmark
+    public UserDetails account() {
+        return accountUserDetailsService.loadUserByUsername(AccountApplicationState.USERNAME);
+    }
+
+    @Benchmark
+    public UserDetails admin() {
+        return accountUserDetailsService.loadUserByUsername("admin"); // 不访问数据库，作为基准
+    }
+
+}
@@ -1,6 +1,13 @@
 package com.example;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 
@@ -9,12 +16,22 @@ import javax.persistence.*;
  */
 @Entity
 @Table(name = "t_account")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "account")
+@NaturalIdCache(region = "account-natural-id")
+@DynamicUpdate // update语句只包含变化的列
 public class Account { // 1
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(generator = "account_id")
+    @GenericGenerator(name = "account_id", strategy = "enhanced-sequence", parameters = {
+            @Parameter(name = "sequence_name", value = "t_account_seq"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled")
+    }) // 自增主键要等insert之后才知道id，natural id缓存会缓存到空id，这里改为插入前分配id
     private long id; // 2
 
+    @NaturalId
     @Column(unique = true, nullable = false, length = 20)
     private String username; // 3
 
@@ -27,6 +44,10 @@ public class Account { // 1
     private Integer age;
     private Byte gender;
 
+    @Version
+    @JsonIgnore
+    private long version; // 乐观锁版本号，每次更新加1，与id一起生成ETag
+
     public Account() {
     }
 
@@ -104,6 +125,14 @@ public class Account { // 1
         this.gender = gender;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return "Account{" +
@@ -115,6 +144,7 @@ public class Account { // 1
                 ", lastName='" + lastName + '\'' +
                 ", age=" + age +
                 ", gender=" + gender +
+                ", version=" + version +
                 '}';
     }
 }
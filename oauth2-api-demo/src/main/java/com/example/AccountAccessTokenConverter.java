@@ -0,0 +1,44 @@
+package com.example;
+
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.OAuth2Request;
+import org.springframework.security.oauth2.provider.token.DefaultAccessTokenConverter;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 默认的转换器在有用户信息时不会把客户端的权限写进token，
+ * 资源服务器无法再判断#oauth2.clientHasRole('IOS_USER')，这里额外保存客户端权限
+ */
+public class AccountAccessTokenConverter extends DefaultAccessTokenConverter {
+
+    private static final String CLIENT_AUTHORITIES = "client_authorities";
+
+    @Override
+    public Map<String, ?> convertAccessToken(OAuth2AccessToken token, OAuth2Authentication authentication) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> response = (Map<String, Object>) super.convertAccessToken(token, authentication);
+        response.put(CLIENT_AUTHORITIES, AuthorityUtils.authorityListToSet(authentication.getOAuth2Request().getAuthorities()));
+        return response;
+    }
+
+    @Override
+    public OAuth2Authentication extractAuthentication(Map<String, ?> map) {
+        OAuth2Authentication authentication = super.extractAuthentication(map);
+        if (!map.containsKey(CLIENT_AUTHORITIES))
+            return authentication;
+
+        @SuppressWarnings("unchecked")
+        Collection<String> clientAuthorities = (Collection<String>) map.get(CLIENT_AUTHORITIES);
+        OAuth2Request request = authentication.getOAuth2Request();
+        OAuth2Request clientRequest = new OAuth2Request(request.getRequestParameters(), request.getClientId(),
+                AuthorityUtils.createAuthorityList(clientAuthorities.toArray(new String[clientAuthorities.size()])),
+                request.isApproved(), request.getScope(), request.getResourceIds(), request.getRedirectUri(),
+                request.getResponseTypes(), request.getExtensions());
+        return new OAuth2Authentication(clientRequest, authentication.getUserAuthentication());
+    }
+
+}
@@ -0,0 +1,233 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.provider.ClientDetails;
+import org.springframework.security.oauth2.provider.ClientDetailsService;
+import org.springframework.security.oauth2.provider.ClientRegistrationException;
+import org.springframework.security.oauth2.provider.NoSuchClientException;
+import org.springframework.security.oauth2.provider.client.BaseClientDetails;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 客户端注册表，启动时从account.clients.location指定的json文件读取全部客户端，
+ * 预先构建成不可变的ClientDetails对象放入只读Map，按clientId直接查找。
+ * 文件修改后定时重新加载，整体替换Map引用，读取时不加锁
+ */
+@Service
+public class AccountClientDetailsService implements ClientDetailsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountClientDetailsService.class);
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private final Resource location;
+
+    private volatile Map<String, ClientDetails> clients;
+    private volatile long lastModified;
+
+    public AccountClientDetailsService(@Value("${account.clients.location:classpath:clients.json}") Resource location) throws IOException {
+        this.location = location;
+        this.lastModified = lastModified();
+        this.clients = load(); // 启动时加载失败直接抛出，避免没有客户端的授权服务器启动
+    }
+
+    @Override
+    public ClientDetails loadClientByClientId(String clientId) throws ClientRegistrationException {
+        ClientDetails client = clients.get(clientId);
+        if (client == null)
+            throw new NoSuchClientException("客户端" + clientId + "不存在");
+        return client;
+    }
+
+    /**
+     * 所有客户端中最长的access token有效期（秒），未指定的按DefaultTokenServices的默认值12小时计算；
+     * 有客户端的token永不过期（有效期不大于0）时返回0
+     */
+    public int maxAccessTokenValiditySeconds() {
+        return maxValiditySeconds(true, 60 * 60 * 12);
+    }
+
+    /**
+     * 所有客户端中最长的refresh token有效期（秒），未指定的按DefaultTokenServices的默认值30天计算；
+     * 有客户端的token永不过期（有效期不大于0）时返回0
+     */
+    public int maxRefreshTokenValiditySeconds() {
+        return maxValiditySeconds(false, 60 * 60 * 24 * 30);
+    }
+
+    private int maxValiditySeconds(boolean accessToken, int defaultSeconds) {
+        int max = 0;
+        for (ClientDetails client : clients.values()) {
+            Integer seconds = accessToken ? client.getAccessTokenValiditySeconds() : client.getRefreshTokenValiditySeconds();
+            if (seconds == null)
+                seconds = defaultSeconds;
+            if (seconds <= 0)
+                return 0;
+            max = Math.max(max, seconds);
+        }
+        return max;
+    }
+
+    @Scheduled(fixedDelayString = "${account.clients.reload-interval:30000}")
+    public void reload() {
+        long modified = lastModified();
+        if (modified == lastModified)
+            return;
+
+        try {
+            clients = load();
+            lastModified = modified;
+            logger.info("重新加载客户端注册表，共{}个客户端", clients.size());
+        } catch (IOException | RuntimeException e) {
+            logger.warn("重新加载客户端注册表失败，继续使用之前的配置", e); // 文件改错时保留旧的注册表
+        }
+    }
+
+    private Map<String, ClientDetails> load() throws IOException {
+        BaseClientDetails[] definitions;
+        try (InputStream in = location.getInputStream()) {
+            definitions = objectMapper.readValue(in, BaseClientDetails[].class);
+        }
+
+        Map<String, ClientDetails> loaded = new HashMap<>(definitions.length * 2);
+        for (BaseClientDetails definition : definitions) {
+            if (definition.getClientId() == null)
+                throw new IllegalStateException(location + "中存在未指定client_id的客户端");
+            if (loaded.put(definition.getClientId(), new ImmutableClientDetails(definition)) != null)
+                throw new IllegalStateException(location + "中客户端" + definition.getClientId() + "重复定义");
+        }
+        return Collections.unmodifiableMap(loaded);
+    }
+
+    private long lastModified() {
+        try {
+            return location.lastModified();
+        } catch (IOException e) {
+            return 0L; // jar包内的资源等无法获取修改时间，此时不做热加载
+        }
+    }
+
+    /**
+     * 所有集合在构建时复制为只读集合，同一个对象可以被所有请求共享
+     */
+    private static final class ImmutableClientDetails implements ClientDetails {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String clientId;
+        private final String clientSecret;
+        private final Set<String> resourceIds;
+        private final Set<String> scope;
+        private final Set<String> autoApproveScopes;
+        private final Set<String> authorizedGrantTypes;
+        private final Set<String> registeredRedirectUri;
+        private final Collection<GrantedAuthority> authorities;
+        private final Integer accessTokenValiditySeconds;
+        private final Integer refreshTokenValiditySeconds;
+        private final Map<String, Object> additionalInformation;
+
+        ImmutableClientDetails(ClientDetails client) {
+            this.clientId = client.getClientId();
+            this.clientSecret = client.getClientSecret();
+            this.resourceIds = copy(client.getResourceIds());
+            this.scope = copy(client.getScope());
+            this.autoApproveScopes = copy(((BaseClientDetails) client).getAutoApproveScopes());
+            this.authorizedGrantTypes = copy(client.getAuthorizedGrantTypes());
+            this.registeredRedirectUri = copy(client.getRegisteredRedirectUri());
+            this.authorities = Collections.unmodifiableList(new ArrayList<>(client.getAuthorities()));
+            this.accessTokenValiditySeconds = client.getAccessTokenValiditySeconds();
+            this.refreshTokenValiditySeconds = client.getRefreshTokenValiditySeconds();
+            this.additionalInformation = Collections.unmodifiableMap(new LinkedHashMap<>(client.getAdditionalInformation()));
+        }
+
+        private static Set<String> copy(Set<String> values) {
+            return values == null ? Collections.<String>emptySet() : Collections.unmodifiableSet(new LinkedHashSet<>(values));
+        }
+
+        @Override
+        public String getClientId() {
+            return clientId;
+        }
+
+        @Override
+        public Set<String> getResourceIds() {
+            return resourceIds;
+        }
+
+        @Override
+        public boolean isSecretRequired() {
+            return clientSecret != null;
+        }
+
+        @Override
+        public String getClientSecret() {
+            return clientSecret;
+        }
+
+        @Override
+        public boolean isScoped() {
+            return !scope.isEmpty();
+        }
+
+        @Override
+        public Set<String> getScope() {
+            return scope;
+        }
+
+        @Override
+        public Set<String> getAuthorizedGrantTypes() {
+            return authorizedGrantTypes;
+        }
+
+        @Override
+        public Set<String> getRegisteredRedirectUri() {
+            return registeredRedirectUri;
+        }
+
+        @Override
+        public Collection<GrantedAuthority> getAuthorities() {
+            return authorities;
+        }
+
+        @Override
+        public Integer getAccessTokenValiditySeconds() {
+            return accessTokenValiditySeconds;
+        }
+
+        @Override
+        public Integer getRefreshTokenValiditySeconds() {
+            return refreshTokenValiditySeconds;
+        }
+
+        @Override
+        public boolean isAutoApprove(String scope) {
+            return autoApproveScopes.contains("true") || autoApproveScopes.contains(scope);
+        }
+
+        @Override
+        public Map<String, Object> getAdditionalInformation() {
+            return additionalInformation;
+        }
+
+    }
+
+}
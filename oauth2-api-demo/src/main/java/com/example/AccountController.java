@@ -1,12 +1,29 @@
 package com.example;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.hateoas.Link;
 import org.springframework.hateoas.Resources;
+import org.springframework.hateoas.mvc.ControllerLinkBuilder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.security.Principal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Created by sun on 2016/11/20.
@@ -16,84 +33,206 @@ import java.util.List;
 @RequestMapping("/api/accounts")
 public class AccountController { // 1
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private static final Set<String> PATCHABLE_FIELDS = new HashSet<>(Arrays.asList("email", "firstName", "lastName", "age", "gender"));
+
     @Autowired
     private AccountRepository accountRepository; // 2
 
+    @Autowired
+    private AccountExecutor accountExecutor;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AccountBatchService accountBatchService;
+
+    @Autowired
+    private AccountExporter accountExporter;
+
+    @Autowired
+    private AccountDataSourceRouting accountDataSourceRouting; // 读写分离，读取可以访问从库
+
     @RequestMapping(method = RequestMethod.GET, value = "/me")
-    public AccountResource me(Principal principal) { // 1
-        String username = principal.getName(); // 2
-        Account account = accountRepository.findByUsername(username);
-        if(account == null)
-            throw new IllegalArgumentException("用户不存在！");
-        return new AccountResource(account);
+    public CompletableFuture<AccountResource> me(Principal principal, WebRequest webRequest) { // 1
+        return accountExecutor.submit(() -> {
+            String username = principal.getName(); // 2
+            Account account = accountDataSourceRouting.read(username, () -> accountRepository.findByUsername(username));
+            if(account == null)
+                throw new IllegalArgumentException("用户不存在！");
+            if(webRequest.checkNotModified(AccountETags.of(account)))
+                return null; // 304，不生成响应内容
+            return new AccountResource(account);
+        });
     }
 
 
     @RequestMapping(method = RequestMethod.POST, value = "/add")
-    public AccountResource add(@RequestBody Account account){ // 3
+    public CompletableFuture<AccountResource> add(@RequestBody Account account){ // 3
+        return accountExecutor.submit(() -> {
+            account.setId(0); // 5
+            accountRepository.save(account); // 6 username有唯一约束，用户已存在时insert失败，由AccountRestControllerAdvice返回409
+            accountDataSourceRouting.written(account.getUsername());
 
-        if(accountRepository.findByUsername(account.getUsername()) != null){
-            throw new IllegalArgumentException("用户已经存在！");
-        }// 4
+            return new AccountResource(account); // 7
+        });
+    }
 
-        account.setId(0); // 5
-        accountRepository.save(account); // 6
+    @RequestMapping(method = RequestMethod.POST, value = "/batch")
+    public CompletableFuture<List<AccountBatchResult>> batch(@RequestBody List<Account> accounts) { // 批量创建，逐个返回处理结果
+        return accountExecutor.submit(() -> {
+            List<AccountBatchResult> results = accountBatchService.create(accounts);
+            accounts.forEach(account -> accountDataSourceRouting.written(account.getUsername()));
+            return results;
+        });
+    }
 
-        return new AccountResource(account); // 7
+    @RequestMapping(method = RequestMethod.DELETE, value = "/batch")
+    public CompletableFuture<Map<String, Integer>> batchDelete(@RequestBody List<String> usernames) { // 批量删除，返回实际删除的数量
+        return accountExecutor.submit(() -> {
+            int deleted = accountBatchService.delete(usernames);
+            usernames.forEach(accountDataSourceRouting::written);
+            return Collections.singletonMap("deleted", deleted);
+        });
     }
 
     @RequestMapping(method = RequestMethod.GET, value = "/{username}")
-    public AccountResource account(@PathVariable String username) { // 1
-        Account account = accountRepository.findByUsername(username);
-        if(account == null){
-            throw new IllegalArgumentException("用户不存在！");
-        }
-
-        return new AccountResource(account);
+    public CompletableFuture<AccountResource> account(@PathVariable String username, WebRequest webRequest) { // 1
+        return accountExecutor.submit(() -> {
+            Account account = accountDataSourceRouting.read(username, () -> accountRepository.findByUsername(username));
+            if(account == null){
+                throw new IllegalArgumentException("用户不存在！");
+            }
+            if(webRequest.checkNotModified(AccountETags.of(account))){
+                return null; // 304，If-None-Match与当前版本一致时不生成响应内容
+            }
+
+            return new AccountResource(account);
+        });
     }
 
     @RequestMapping(method = RequestMethod.PUT, value = "/update")
-    public AccountResource update(@RequestBody Account account) { // 9
-
-        Account me = accountRepository.findByUsername(account.getUsername());
-        if(me == null){
-            throw new IllegalArgumentException("用户不存在！");
-        }
-
-        me.setPassword(account.getPassword());
-        me.setEmail(account.getEmail());
-        me.setFirstName(account.getFirstName());
-        me.setLastName(account.getLastName());
-        me.setAge(account.getAge());
-        me.setGender(account.getGender());
-
-        me = accountRepository.save(me); // 10
-
-        return new AccountResource(me);
+    public CompletableFuture<AccountResource> update(@RequestBody Account account, WebRequest webRequest) { // 9
+        return accountExecutor.submit(() -> {
+            Account me = accountDataSourceRouting.primary(() -> accountRepository.findByUsername(account.getUsername())); // 修改前从主库读取
+            if(me == null){
+                throw new IllegalArgumentException("用户不存在！");
+            }
+            AccountETags.checkIfMatch(webRequest, me); // 带If-Match时，版本不一致返回412
+
+            me.setPassword(account.getPassword());
+            me.setEmail(account.getEmail());
+            me.setFirstName(account.getFirstName());
+            me.setLastName(account.getLastName());
+            me.setAge(account.getAge());
+            me.setGender(account.getGender());
+
+            me = accountRepository.save(me); // 10
+            accountDataSourceRouting.written(me.getUsername());
+            AccountETags.setETag(webRequest, me);
+
+            return new AccountResource(me);
+        });
+    }
 
+    @RequestMapping(method = RequestMethod.PATCH, value = "/{username}")
+    public CompletableFuture<AccountResource> patch(@PathVariable String username, @RequestBody ObjectNode changes, WebRequest webRequest) { // 只修改请求中给出的字段
+        return accountExecutor.submit(() -> {
+            Account me = accountDataSourceRouting.primary(() -> accountRepository.findByUsername(username));
+            if(me == null){
+                throw new IllegalArgumentException("用户不存在！");
+            }
+            AccountETags.checkIfMatch(webRequest, me);
+
+            JsonNode current = objectMapper.valueToTree(me);
+            boolean changed = false;
+            Iterator<String> names = changes.fieldNames();
+            while (names.hasNext()) {
+                String name = names.next();
+                if (!PATCHABLE_FIELDS.contains(name))
+                    throw new IllegalArgumentException("字段" + name + "不能修改！");
+                changed |= !changes.get(name).equals(current.get(name));
+            }
+            if (!changed) {
+                AccountETags.setETag(webRequest, me);
+                return new AccountResource(me); // 没有任何变化，不写数据库
+            }
+
+            objectMapper.readerForUpdating(me).readValue(changes);
+            me = accountRepository.save(me); // Account标注了@DynamicUpdate，update语句只包含变化的列
+            accountDataSourceRouting.written(username);
+            AccountETags.setETag(webRequest, me);
+
+            return new AccountResource(me);
+        });
     }
 
     @RequestMapping(method = RequestMethod.DELETE, value = "/{username}")
-    public AccountResource delete(@PathVariable String username) { // 11
-
-        Account account = accountRepository.findByUsername(username);
-        if(account == null){
-            throw new IllegalArgumentException("用户不存在！");
-        }
+    public CompletableFuture<AccountResource> delete(@PathVariable String username) { // 11
+        return accountExecutor.submit(() -> {
+            Account account = accountDataSourceRouting.primary(() -> accountRepository.findByUsername(username));
+            if(account == null){
+                throw new IllegalArgumentException("用户不存在！");
+            }
 
-        accountRepository.delete(account); // 12
+            accountRepository.delete(account); // 12
+            accountDataSourceRouting.written(username);
 
-        return new AccountResource(account);
+            return new AccountResource(account);
+        });
     }
 
     @RequestMapping(method = RequestMethod.GET, value = "/")
-    public Resources<AccountResource> list() {
-        Iterable<Account> accounts = accountRepository.findAll();
-        List<AccountResource> accountList = new ArrayList<>();
-        accounts.forEach(account -> {
-            accountList.add(new AccountResource(account));
+    public CompletableFuture<Resources<AccountResource>> list(@RequestParam(required = false) Long after,
+                                                              @RequestParam(required = false) Long before,
+                                                              @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size) { // 13
+        return accountExecutor.submit(() -> {
+            int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+            Pageable limit = new PageRequest(0, pageSize + 1); // 14
+
+            List<Account> accounts;
+            boolean hasNext;
+            boolean hasPrev;
+            if(before != null){
+                accounts = new ArrayList<>(accountDataSourceRouting.read(null, () -> accountRepository.findByIdLessThanOrderByIdDesc(before, limit))); // 列表允许读到从库中稍旧的数据
+                hasPrev = accounts.size() > pageSize;
+                if(hasPrev)
+                    accounts.remove(pageSize);
+                Collections.reverse(accounts);
+                hasNext = true;
+            } else {
+                accounts = new ArrayList<>(accountDataSourceRouting.read(null, () -> accountRepository.findByIdGreaterThanOrderByIdAsc(after != null ? after : 0L, limit)));
+                hasNext = accounts.size() > pageSize;
+                if(hasNext)
+                    accounts.remove(pageSize);
+                hasPrev = after != null;
+            } // 15
+
+            List<AccountResource> accountList = new ArrayList<>(accounts.size());
+            accounts.forEach(account -> {
+                accountList.add(new AccountResource(account));
+            });
+
+            Resources<AccountResource> resources = new Resources<>(accountList);
+            resources.add(ControllerLinkBuilder.linkTo(ControllerLinkBuilder.methodOn(AccountController.class).list(after, before, pageSize)).withSelfRel());
+            if(!accounts.isEmpty()){
+                if(hasNext)
+                    resources.add(ControllerLinkBuilder.linkTo(ControllerLinkBuilder.methodOn(AccountController.class).list(accounts.get(accounts.size() - 1).getId(), null, pageSize)).withRel(Link.REL_NEXT));
+                if(hasPrev)
+                    resources.add(ControllerLinkBuilder.linkTo(ControllerLinkBuilder.methodOn(AccountController.class).list(null, accounts.get(0).getId(), pageSize)).withRel(Link.REL_PREVIOUS));
+            } // 16
+            return resources;
         });
-        return new Resources<>(accountList);
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "/export", produces = "application/x-ndjson")
+    public void export(HttpServletResponse response) throws IOException {
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        accountExporter.export(response.getOutputStream());
     }
 
 }
@@ -0,0 +1,188 @@
+package com.example;
+
+import org.apache.tomcat.jdbc.pool.DataSourceProxy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.MutablePropertyValues;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.jdbc.metadata.DataSourcePoolMetadata;
+import org.springframework.boot.autoconfigure.jdbc.metadata.DataSourcePoolMetadataProvider;
+import org.springframework.boot.autoconfigure.jdbc.metadata.DataSourcePoolMetadataProviders;
+import org.springframework.boot.bind.RelaxedDataBinder;
+import org.springframework.boot.bind.RelaxedPropertyResolver;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 应用中所有连接池的登记处，登记时包装为TimedDataSource：
+ * 1. 发布/manage/metrics中的datasource.pool.{名称}.active、idle、max、timeouts，等待时间见latency.datasource.pool.{名称}.wait
+ * 2. 所有单例创建完成后（内嵌Tomcat开始接受请求之前）预热：每个连接池打开并校验warm-up-connections个连接，必需的连接池失败时启动失败
+ * 3. 应用关闭时关闭所有登记的连接池
+ * 4. 配置了account.datasource.token-store.*时，为AccountTokenStore创建单独的连接池，属性按所用连接池的字段名绑定
+ * 5. 作为DataSourcePoolMetadataProvider识别包装后的TimedDataSource，spring boot自带的datasource.primary.active、usage等指标照常发布
+ */
+@Component
+public class AccountDataSourcePools implements PublicMetrics, DataSourcePoolMetadataProvider, SmartInitializingSingleton, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountDataSourcePools.class);
+
+    private static final String TOKEN_STORE_PREFIX = "account.datasource.token-store.";
+
+    private final AccountLatencyMetrics accountLatencyMetrics;
+    private final DataSourcePoolMetadataProviders metadataProviders;
+    private final int warmUpConnections;
+    private final int validationTimeoutSeconds;
+
+    private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+    private final DataSource tokenStore; // 没有单独的token连接池时为null
+
+    public AccountDataSourcePools(AccountLatencyMetrics accountLatencyMetrics,
+                                  List<DataSourcePoolMetadataProvider> metadataProviders, // 不包括自己
+                                  DataSourceProperties dataSourceProperties, Environment environment,
+                                  @Value("${account.datasource.warm-up-connections:0}") int warmUpConnections,
+                                  @Value("${account.datasource.validation-timeout-seconds:2}") int validationTimeoutSeconds) {
+        this.accountLatencyMetrics = accountLatencyMetrics;
+        this.metadataProviders = new DataSourcePoolMetadataProviders(metadataProviders);
+        this.warmUpConnections = warmUpConnections;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+
+        Map<String, Object> tokenStoreProperties = new RelaxedPropertyResolver(environment, TOKEN_STORE_PREFIX).getSubProperties("");
+        if (tokenStoreProperties.isEmpty()) {
+            this.tokenStore = null;
+        } else {
+            DataSource pool = dataSourceProperties.initializeDataSourceBuilder().build(); // 与spring.datasource使用同一个数据库和连接池实现
+            new RelaxedDataBinder(pool).bind(new MutablePropertyValues(tokenStoreProperties));
+            this.tokenStore = register("token-store", pool, true);
+        }
+    }
+
+    /**
+     * 登记连接池，返回包装后的DataSource，应用中应使用返回值。
+     * required为true时预热失败则启动失败，否则只输出日志
+     */
+    public DataSource register(String name, DataSource pool, boolean required) {
+        TimedDataSource dataSource = new TimedDataSource(name, pool, accountLatencyMetrics);
+        if (pools.putIfAbsent(name, new Pool(dataSource, required)) != null)
+            throw new IllegalStateException("连接池" + name + "已登记");
+        return dataSource;
+    }
+
+    /**
+     * 是否配置了单独的token连接池。该连接池直接连接主库，不参与读写分离
+     */
+    public boolean hasTokenStore() {
+        return tokenStore != null;
+    }
+
+    /**
+     * 配置了单独的token连接池时返回该连接池，否则返回defaultDataSource
+     */
+    public DataSource tokenStore(DataSource defaultDataSource) {
+        return tokenStore != null ? tokenStore : defaultDataSource;
+    }
+
+    @Override
+    public DataSourcePoolMetadata getDataSourcePoolMetadata(DataSource dataSource) {
+        if (dataSource instanceof TimedDataSource) // 其他provider只认识具体的连接池
+            return metadataProviders.getDataSourcePoolMetadata(((TimedDataSource) dataSource).getTargetDataSource());
+        return null;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (warmUpConnections <= 0)
+            return;
+        for (Pool pool : pools.values())
+            warmUp(pool);
+    }
+
+    private void warmUp(Pool pool) {
+        String name = pool.dataSource.getName();
+        DataSource target = pool.dataSource.getTargetDataSource(); // 预热不计入等待时间
+        DataSourcePoolMetadata metadata = metadataProviders.getDataSourcePoolMetadata(target);
+        int count = metadata != null && metadata.getMax() != null && metadata.getMax() > 0 ? Math.min(warmUpConnections, metadata.getMax()) : warmUpConnections;
+
+        long start = System.nanoTime();
+        List<Connection> connections = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) { // 同时持有count个连接，迫使连接池打开count个物理连接
+                Connection connection = target.getConnection();
+                connections.add(connection);
+                if (!connection.isValid(validationTimeoutSeconds))
+                    throw new SQLException("连接校验失败");
+            }
+            logger.info("连接池{}预热完成，{}个连接，耗时{}ms", name, count, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (SQLException e) {
+            if (pool.required)
+                throw new IllegalStateException("连接池" + name + "预热失败", e);
+            logger.warn("连接池{}预热失败，已打开{}个连接", name, connections.size(), e);
+        } finally {
+            for (Connection connection : connections)
+                JdbcUtils.closeConnection(connection);
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>(pools.size() * 4);
+        for (Pool pool : pools.values()) {
+            String prefix = "datasource.pool." + pool.dataSource.getName();
+            DataSource target = pool.dataSource.getTargetDataSource();
+            DataSourcePoolMetadata metadata = metadataProviders.getDataSourcePoolMetadata(target);
+            if (metadata != null) {
+                addMetric(metrics, prefix + ".active", metadata.getActive());
+                addMetric(metrics, prefix + ".max", metadata.getMax());
+            }
+            if (target instanceof DataSourceProxy) // DataSourcePoolMetadata中没有空闲连接数，目前只支持tomcat-jdbc
+                addMetric(metrics, prefix + ".idle", ((DataSourceProxy) target).getIdle());
+            addMetric(metrics, prefix + ".timeouts", pool.dataSource.getTimeouts());
+        }
+        return metrics;
+    }
+
+    private static void addMetric(List<Metric<?>> metrics, String name, Number value) {
+        if (value != null)
+            metrics.add(new Metric<>(name, value));
+    }
+
+    @Override
+    public void destroy() {
+        for (Pool pool : pools.values()) {
+            DataSource target = pool.dataSource.getTargetDataSource();
+            Method close = ReflectionUtils.findMethod(target.getClass(), "close"); // 各连接池都有close方法，但不一定实现Closeable
+            if (close != null)
+                ReflectionUtils.invokeMethod(close, target);
+        }
+    }
+
+    private static final class Pool {
+
+        final TimedDataSource dataSource;
+        final boolean required;
+
+        Pool(TimedDataSource dataSource, boolean required) {
+            this.dataSource = dataSource;
+            this.required = required;
+        }
+
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.example;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 读写分离时决定当前线程的语句发送到主库还是从库，由ReplicaRoutingDataSource在获取连接时调用：
+ * 只读事务和read中的读取发送到从库，读写事务和primary中的操作发送到主库。
+ * 为了读到自己刚写入的数据，written(key)之后account.datasource.replica.sticky-ms毫秒内，同一个key的read仍然访问主库。
+ * key只在当前进程内记录，部署多个实例时依靠从库延迟本身足够小（account.datasource.replica.max-lag-ms）
+ */
+@Component
+public class AccountDataSourceRouting {
+
+    private static final int MAX_STICKY_KEYS = 10000; // 超过时清理已过期的key
+
+    private enum Route { PRIMARY, REPLICA }
+
+    private final ThreadLocal<Route> route = new ThreadLocal<>();
+    private final ConcurrentMap<String, Long> recentWrites = new ConcurrentHashMap<>(); // key -> 访问主库的截止时间（nanoTime）
+
+    private final long stickyNanos;
+
+    public AccountDataSourceRouting(@Value("${account.datasource.replica.sticky-ms:5000}") long stickyMillis) {
+        this.stickyNanos = TimeUnit.MILLISECONDS.toNanos(stickyMillis);
+    }
+
+    /**
+     * 执行读取，允许访问从库；key最近被写入过时访问主库。key为null表示可以接受从库延迟（例如列表）
+     */
+    public <T> T read(String key, Supplier<T> read) {
+        Route previous = route.get();
+        if (previous == Route.PRIMARY)
+            return read.get(); // 写操作中的读取仍然访问主库
+
+        route.set(key != null && recentlyWritten(key) ? Route.PRIMARY : Route.REPLICA);
+        try {
+            return read.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * 执行时全部访问主库，用于写之前的读取（例如修改前先查询出对象）
+     */
+    public <T> T primary(Supplier<T> work) {
+        Route previous = route.get();
+        route.set(Route.PRIMARY);
+        try {
+            return work.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * 记录key刚被写入，之后一段时间内这个key的read访问主库
+     */
+    public void written(String key) {
+        if (stickyNanos <= 0)
+            return;
+        if (recentWrites.size() >= MAX_STICKY_KEYS) {
+            long now = System.nanoTime();
+            recentWrites.values().removeIf(deadline -> deadline - now < 0);
+        }
+        recentWrites.put(key, System.nanoTime() + stickyNanos);
+    }
+
+    /**
+     * 当前线程获取连接时是否可以使用从库
+     */
+    boolean replicaAllowed() {
+        if (TransactionSynchronizationManager.isActualTransactionActive() && !TransactionSynchronizationManager.isCurrentTransactionReadOnly())
+            return false; // 读写事务
+        Route current = route.get();
+        if (current != null)
+            return current == Route.REPLICA;
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private boolean recentlyWritten(String key) {
+        Long deadline = recentWrites.get(key);
+        if (deadline == null)
+            return false;
+        if (deadline - System.nanoTime() > 0)
+            return true;
+        recentWrites.remove(key, deadline);
+        return false;
+    }
+
+    private void restore(Route previous) {
+        if (previous == null)
+            route.remove();
+        else
+            route.set(previous);
+    }
+
+}
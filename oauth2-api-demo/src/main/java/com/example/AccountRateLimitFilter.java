@@ -0,0 +1,76 @@
+package com.example;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在springSecurityFilterChain之前限流，只解析请求，不访问数据库、不校验密码：
+ * 来源IP；Authorization: Basic中的client id（/oauth/token的客户端认证）；
+ * 用户为/oauth/token中password授权的username，或访问API时Authorization: Bearer中的access token。
+ * 超过限制时直接返回429和Retry-After，没有响应体
+ */
+public class AccountRateLimitFilter extends OncePerRequestFilter {
+
+    private static final String TOKEN_ENDPOINT = "/oauth/token";
+
+    private final AccountRateLimiter accountRateLimiter;
+
+    public AccountRateLimitFilter(AccountRateLimiter accountRateLimiter) {
+        this.accountRateLimiter = accountRateLimiter;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        long wait = accountRateLimiter.ip().acquire(request.getRemoteAddr());
+        if (wait == 0)
+            wait = accountRateLimiter.client().acquire(basicUsername(authorization));
+        if (wait == 0)
+            wait = accountRateLimiter.user().acquire(user(request, authorization));
+
+        if (wait > 0) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(TimeUnit.NANOSECONDS.toSeconds(wait) + 1)); // 向上取整
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * 不校验token，只作为限流的key，同一个用户在不同设备上的token分别限流
+     */
+    private static String user(HttpServletRequest request, String authorization) {
+        if (TOKEN_ENDPOINT.equals(request.getServletPath()))
+            return request.getParameter("username");
+        if (authorization != null && authorization.startsWith("Bearer "))
+            return authorization.substring(7).trim();
+        return null;
+    }
+
+    /**
+     * Authorization: Basic中的用户名，格式不对时返回null，由BasicAuthenticationFilter处理
+     */
+    static String basicUsername(String authorization) {
+        if (authorization == null || !authorization.startsWith("Basic "))
+            return null;
+        try {
+            String credentials = new String(Base64.getDecoder().decode(authorization.substring(6).trim()), StandardCharsets.UTF_8);
+            int colon = credentials.indexOf(':');
+            return colon < 0 ? null : credentials.substring(0, colon);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+}
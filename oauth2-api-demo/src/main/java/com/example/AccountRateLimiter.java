@@ -0,0 +1,142 @@
+package com.example;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按来源IP、client id和用户（用户名或access token）分别限流的令牌桶，由AccountRateLimitFilter在安全过滤器链之前调用。
+ * 每个桶只有一个AtomicLong（下一个请求的理论到达时间，即GCRA算法），取令牌为一次CAS，不加锁。
+ * 每种限流最多保存max-keys个桶，满时清理已经回满的桶，仍然满时新的key共用一个溢出桶
+ */
+@Component
+public class AccountRateLimiter implements PublicMetrics {
+
+    private final boolean enabled;
+    private final Limit ip;
+    private final Limit client;
+    private final Limit user;
+
+    public AccountRateLimiter(@Value("${account.rate-limit.enabled:true}") boolean enabled,
+                              @Value("${account.rate-limit.max-keys:100000}") int maxKeys,
+                              @Value("${account.rate-limit.ip.per-second:50}") double ipPerSecond,
+                              @Value("${account.rate-limit.ip.burst:100}") int ipBurst,
+                              @Value("${account.rate-limit.client.per-second:200}") double clientPerSecond,
+                              @Value("${account.rate-limit.client.burst:400}") int clientBurst,
+                              @Value("${account.rate-limit.user.per-second:10}") double userPerSecond,
+                              @Value("${account.rate-limit.user.burst:20}") int userBurst) {
+        this.enabled = enabled;
+        this.ip = new Limit("ip", ipPerSecond, ipBurst, maxKeys);
+        this.client = new Limit("client", clientPerSecond, clientBurst, maxKeys);
+        this.user = new Limit("user", userPerSecond, userBurst, maxKeys);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Limit ip() {
+        return ip;
+    }
+
+    public Limit client() {
+        return client;
+    }
+
+    public Limit user() {
+        return user;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        ip.metrics(metrics);
+        client.metrics(metrics);
+        user.metrics(metrics);
+        return metrics;
+    }
+
+    public static final class Limit {
+
+        private static final long EVICTION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+        private final String name;
+        private final long intervalNanos; // 每个请求占用的时间，per-second不大于0时为0，不限流
+        private final long burstNanos;
+        private final int maxKeys;
+
+        private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+        private final AtomicLong overflow = new AtomicLong(System.nanoTime());
+        private final AtomicLong nextEviction = new AtomicLong(System.nanoTime());
+
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder overflows = new LongAdder();
+
+        Limit(String name, double perSecond, int burst, int maxKeys) {
+            this.name = name;
+            this.intervalNanos = perSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / perSecond) : 0;
+            this.burstNanos = intervalNanos * Math.max(1, burst);
+            this.maxKeys = maxKeys;
+        }
+
+        /**
+         * 为key取一个令牌，取到时返回0，否则返回还需等待的纳秒数；key为null时不限流
+         */
+        public long acquire(String key) {
+            if (intervalNanos == 0 || key == null)
+                return 0;
+
+            long now = System.nanoTime();
+            AtomicLong bucket = bucket(key, now);
+            while (true) {
+                long tat = bucket.get();
+                long next = Math.max(tat, now) + intervalNanos;
+                long wait = next - now - burstNanos;
+                if (wait > 0) {
+                    rejected.increment();
+                    return wait;
+                }
+                if (bucket.compareAndSet(tat, next))
+                    return 0;
+            }
+        }
+
+        private AtomicLong bucket(String key, long now) {
+            AtomicLong bucket = buckets.get(key);
+            if (bucket != null)
+                return bucket;
+            if (buckets.size() >= maxKeys && !evictIdle(now)) {
+                overflows.increment();
+                return overflow;
+            }
+            return buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+
+        /**
+         * 删除已经回满的桶（删除后再来的请求得到一个新的满桶，与原来等价），每秒最多由一个线程清理一次
+         */
+        private boolean evictIdle(long now) {
+            long next = nextEviction.get();
+            if (now - next >= 0 && nextEviction.compareAndSet(next, now + EVICTION_INTERVAL_NANOS))
+                buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+            return buckets.size() < maxKeys;
+        }
+
+        void metrics(List<Metric<?>> metrics) {
+            metrics.add(new Metric<>("rate-limit." + name + ".rejected", rejected.sum()));
+            metrics.add(new Metric<>("rate-limit." + name + ".overflow", overflows.sum()));
+            metrics.add(new Metric<>("rate-limit." + name + ".keys", buckets.size()));
+        }
+
+    }
+
+}
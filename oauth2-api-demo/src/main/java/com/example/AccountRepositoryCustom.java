@@ -0,0 +1,14 @@
+package com.example;
+
+import java.util.stream.Stream;
+
+/**
+ * AccountRepository中需要手工实现的方法，见AccountRepositoryImpl
+ */
+public interface AccountRepositoryCustom {
+
+    Account findByUsername(String username);
+
+    Stream<Account> streamAll(); // 只进游标，需在事务内使用并关闭
+
+}
@@ -0,0 +1,70 @@
+package com.example;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * username是Account的natural id，按natural id查找可以命中二级缓存，命中时不访问数据库。
+ * streamAll的fetch size：Integer.MIN_VALUE只有MySQL驱动认作逐行返回，其他数据库（如loadtest的H2）会拒绝，使用正数
+ */
+public class AccountRepositoryImpl implements AccountRepositoryCustom {
+
+    private static final int FETCH_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Account findByUsername(String username) {
+        if (username == null)
+            return null;
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(Account.class).load(username);
+    }
+
+    @Override
+    public Stream<Account> streamAll() {
+        Session session = entityManager.unwrap(Session.class);
+        boolean mysql = ((SessionImplementor) session).getFactory().getDialect() instanceof MySQLDialect;
+        ScrollableResults results = session.createQuery("select a from Account a")
+                .setReadOnly(true)
+                .setFetchSize(mysql ? Integer.MIN_VALUE : FETCH_SIZE)
+                .scroll(ScrollMode.FORWARD_ONLY);
+
+        Iterator<Account> iterator = new Iterator<Account>() {
+
+            private Boolean hasNext;
+
+            @Override
+            public boolean hasNext() {
+                if (hasNext == null)
+                    hasNext = results.next();
+                return hasNext;
+            }
+
+            @Override
+            public Account next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                hasNext = null;
+                return (Account) results.get(0);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(results::close);
+    }
+
+}
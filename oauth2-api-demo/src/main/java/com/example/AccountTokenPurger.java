@@ -0,0 +1,136 @@
+package com.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 定时清理JdbcTokenStore中过期的token，JdbcTokenStore本身从不删除过期的记录。
+ * 两张表的create_time由数据库在插入时填写，早于所有客户端中最长有效期的记录即为过期，截止时间同样由数据库计算，不受应用服务器时钟偏差影响。
+ * 每批先按create_time索引查出batch-size个主键，再按主键删除，批次之间暂停pause-ms，
+ * 读写分离时从库延迟超过max-replica-lag-ms则结束本次清理，剩余的留到下一次
+ */
+@Component
+@ConditionalOnProperty(name = "account.token-purge.enabled", matchIfMissing = true)
+public class AccountTokenPurger implements PublicMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountTokenPurger.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AccountClientDetailsService accountClientDetailsService;
+    private final ObjectProvider<ReplicaDataSources> replicaDataSources;
+    private final int batchSize;
+    private final long pauseMillis;
+    private final long maxReplicaLagMillis;
+
+    private volatile String cutoff; // 当前时间减去?秒的SQL表达式，第一次清理时按数据库类型确定
+
+    private final LongAdder accessTokens = new LongAdder();
+    private final LongAdder refreshTokens = new LongAdder();
+    private final LongAdder runs = new LongAdder();
+    private volatile long lastDurationMillis;
+
+    public AccountTokenPurger(DataSource dataSource, AccountDataSourcePools accountDataSourcePools,
+                              AccountClientDetailsService accountClientDetailsService,
+                              ObjectProvider<ReplicaDataSources> replicaDataSources,
+                              @Value("${account.token-purge.batch-size:500}") int batchSize,
+                              @Value("${account.token-purge.pause-ms:100}") long pauseMillis,
+                              @Value("${account.token-purge.max-replica-lag-ms:500}") long maxReplicaLagMillis) {
+        this.jdbcTemplate = new JdbcTemplate(accountDataSourcePools.tokenStore(dataSource)); // 与AccountTokenStore使用同一个连接池
+        this.accountClientDetailsService = accountClientDetailsService;
+        this.replicaDataSources = replicaDataSources;
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+        this.maxReplicaLagMillis = maxReplicaLagMillis;
+    }
+
+    @Scheduled(initialDelayString = "${account.token-purge.interval-ms:600000}", fixedDelayString = "${account.token-purge.interval-ms:600000}")
+    public synchronized void purge() {
+        long start = System.nanoTime();
+        long accessBefore = accessTokens.sum();
+        long refreshBefore = refreshTokens.sum();
+        try {
+            int accessValidity = accountClientDetailsService.maxAccessTokenValiditySeconds();
+            if (accessValidity > 0 && !purge("oauth_access_token", "authentication_id", accessValidity, accessTokens))
+                return;
+
+            int refreshValidity = accountClientDetailsService.maxRefreshTokenValiditySeconds();
+            if (refreshValidity > 0)
+                purge("oauth_refresh_token", "token_id", refreshValidity, refreshTokens);
+        } catch (DataAccessException | MetaDataAccessException e) {
+            logger.warn("清理过期token失败", e); // 例如已有的表还没有添加create_time列
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lastDurationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            runs.increment();
+            long access = accessTokens.sum() - accessBefore;
+            long refresh = refreshTokens.sum() - refreshBefore;
+            if (access + refresh > 0)
+                logger.info("清理过期token：access token {}条，refresh token {}条，耗时{}ms", access, refresh, lastDurationMillis);
+        }
+    }
+
+    /**
+     * 分批删除table中create_time早于validitySeconds秒之前的记录，每批删除的条数累加到deleted；因从库延迟提前结束时返回false
+     */
+    private boolean purge(String table, String key, int validitySeconds, LongAdder deleted) throws InterruptedException, MetaDataAccessException {
+        String select = "select " + key + " from " + table + " where create_time < " + cutoff() + " order by create_time limit " + batchSize;
+        while (true) {
+            List<String> keys = jdbcTemplate.queryForList(select, String.class, validitySeconds);
+            if (!keys.isEmpty()) {
+                String placeholders = StringUtils.collectionToCommaDelimitedString(Collections.nCopies(keys.size(), "?"));
+                deleted.add(jdbcTemplate.update("delete from " + table + " where " + key + " in (" + placeholders + ")", keys.toArray()));
+            }
+            if (keys.size() < batchSize)
+                return true;
+
+            Thread.sleep(pauseMillis);
+            ReplicaDataSources replicas = replicaDataSources.getIfAvailable();
+            if (replicas != null && replicas.replicationLagMillis() > maxReplicaLagMillis) {
+                logger.info("从库复制延迟{}ms，暂停清理{}，剩余的留到下一次", replicas.replicationLagMillis(), table);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * MySQL使用date_sub，其他（H2）使用dateadd
+     */
+    private String cutoff() throws MetaDataAccessException {
+        if (cutoff == null) {
+            String product = (String) JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getDataSource(), "getDatabaseProductName");
+            cutoff = "MySQL".equals(product) ? "date_sub(current_timestamp, interval ? second)" : "dateadd('SECOND', -?, current_timestamp)";
+        }
+        return cutoff;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.<Metric<?>>asList(
+                new Metric<Number>("token-purge.runs", runs.sum()),
+                new Metric<Number>("token-purge.access-tokens", accessTokens.sum()),
+                new Metric<Number>("token-purge.refresh-tokens", refreshTokens.sum()),
+                new Metric<Number>("token-purge.last-duration-ms", lastDurationMillis));
+    }
+
+}
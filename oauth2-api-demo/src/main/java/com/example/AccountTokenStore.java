@@ -1,10 +1,20 @@
 package com.example;
 
-import org.apache.tomcat.jdbc.pool.DataSource;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2RefreshToken;
+import org.springframework.security.oauth2.common.util.SerializationUtils;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
 import org.springframework.security.oauth2.provider.token.store.JdbcTokenStore;
 import org.springframework.stereotype.Component;
 
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
 /**
  * Created by sunxiaopeng on 2016/11/22.
  */
@@ -12,10 +22,135 @@ import org.springframework.stereotype.Component;
 @Component
 public class AccountTokenStore extends JdbcTokenStore { // 1
 
+    private final AccountDataSourceRouting accountDataSourceRouting;
+    private final boolean routed; // 单独的token连接池直接连接主库，不经过读写分离
+    private final JdbcTemplate jdbcTemplate;
+
     @Autowired
-    private DataSource dataSource; // 2
+    public AccountTokenStore(DataSource dataSource, AccountDataSourcePools accountDataSourcePools, AccountDataSourceRouting accountDataSourceRouting) { // 2
+        this(accountDataSourcePools.tokenStore(dataSource), accountDataSourceRouting, !accountDataSourcePools.hasTokenStore()); // 配置了单独的token连接池时使用该连接池
+    }
 
-    public AccountTokenStore(DataSource dataSource) {
+    private AccountTokenStore(DataSource dataSource, AccountDataSourceRouting accountDataSourceRouting, boolean routed) {
         super(dataSource);
+        this.accountDataSourceRouting = accountDataSourceRouting;
+        this.routed = routed;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * 数据库中token_id、refresh_token列的值，WriteBehindTokenStore批量写入时使用
+     */
+    String tokenKey(String value) {
+        return extractTokenKey(value);
+    }
+
+    // 读写分离时token的读取可以访问从库，刚签发或刚删除的token从主库读取，删除后不会因复制延迟在从库上仍然有效；
+    // 使用单独的token连接池时全部访问主库
+
+    @Override
+    public OAuth2AccessToken readAccessToken(String tokenValue) {
+        return read(tokenValue, () -> super.readAccessToken(tokenValue));
+    }
+
+    @Override
+    public OAuth2Authentication readAuthentication(String token) {
+        return read(token, () -> super.readAuthentication(token));
+    }
+
+    @Override
+    public OAuth2RefreshToken readRefreshToken(String token) {
+        return read(token, () -> super.readRefreshToken(token));
+    }
+
+    @Override
+    public OAuth2Authentication readAuthenticationForRefreshToken(OAuth2RefreshToken token) {
+        return read(token.getValue(), () -> super.readAuthenticationForRefreshToken(token));
+    }
+
+    @Override
+    public void storeAccessToken(OAuth2AccessToken token, OAuth2Authentication authentication) {
+        primary(() -> {
+            super.storeAccessToken(token, authentication); // 保存前会先查询同一个token是否已存在
+            return null;
+        });
+        written(token.getValue());
+    }
+
+    @Override
+    public void storeRefreshToken(OAuth2RefreshToken refreshToken, OAuth2Authentication authentication) {
+        super.storeRefreshToken(refreshToken, authentication);
+        written(refreshToken.getValue());
+    }
+
+    @Override
+    public void removeAccessToken(OAuth2AccessToken token) {
+        super.removeAccessToken(token); // 调用removeAccessToken(String)
+        if (token.getRefreshToken() != null)
+            written(token.getRefreshToken().getValue());
     }
+
+    @Override
+    public void removeAccessToken(String tokenValue) {
+        primary(() -> {
+            super.removeAccessToken(tokenValue);
+            return null;
+        });
+        written(tokenValue);
+    }
+
+    @Override
+    public void removeRefreshToken(String token) {
+        primary(() -> {
+            super.removeRefreshToken(token);
+            return null;
+        });
+        written(token);
+    }
+
+    @Override
+    public void removeAccessTokenUsingRefreshToken(String refreshToken) {
+        List<String> accessTokens = primary(() -> {
+            List<String> values = selectAccessTokens(refreshToken); // 删除前查出被删除的access token，它们的读取也要访问主库
+            super.removeAccessTokenUsingRefreshToken(refreshToken);
+            return values;
+        });
+        accessTokens.forEach(this::written);
+        written(refreshToken);
+    }
+
+    /**
+     * 数据库中由refresh token签发的access token，从主库读取，CachingTokenStore据此清除缓存
+     */
+    List<String> accessTokensByRefreshToken(String refreshToken) {
+        return primary(() -> selectAccessTokens(refreshToken));
+    }
+
+    private List<String> selectAccessTokens(String refreshToken) {
+        List<String> values = jdbcTemplate.query("select token from oauth_access_token where refresh_token = ?",
+                (rs, rowNum) -> tokenValue(rs.getBytes(1)), extractTokenKey(refreshToken));
+        return values.stream().filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    private <T> T read(String key, Supplier<T> read) {
+        return routed ? accountDataSourceRouting.read(key, read) : read.get();
+    }
+
+    private <T> T primary(Supplier<T> work) {
+        return routed ? accountDataSourceRouting.primary(work) : work.get();
+    }
+
+    private void written(String key) {
+        if (routed)
+            accountDataSourceRouting.written(key);
+    }
+
+    private static String tokenValue(byte[] token) {
+        try {
+            return SerializationUtils.<OAuth2AccessToken>deserialize(token).getValue();
+        } catch (IllegalArgumentException e) {
+            return null; // 与JdbcTokenStore一样忽略无法读取的记录，照常删除
+        }
+    }
+
 }
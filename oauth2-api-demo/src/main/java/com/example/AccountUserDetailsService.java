@@ -18,6 +18,9 @@ public class AccountUserDetailsService implements UserDetailsService {
     @Autowired
     private AccountRepository accountRepository;
 
+    @Autowired
+    private AccountDataSourceRouting accountDataSourceRouting;
+
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
 
@@ -25,7 +28,7 @@ public class AccountUserDetailsService implements UserDetailsService {
             return new User(username, username, AuthorityUtils.createAuthorityList("ADMIN", "USER"));
         }
 
-        Account account = accountRepository.findByUsername(username);
+        Account account = accountDataSourceRouting.read(username, () -> accountRepository.findByUsername(username)); // 刚注册的用户从主库读取
         if(account == null)
             throw new UsernameNotFoundException("用户[" + username + "]不存在！");
 
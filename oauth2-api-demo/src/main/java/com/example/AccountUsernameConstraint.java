@@ -0,0 +1,100 @@
+package com.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 判断唯一约束冲突是否发生在t_account.username上，即用户名已被占用。
+ * 第一次用到时从数据库元数据查出username上的唯一索引名，与驱动异常信息中的索引名比较
+ * （MySQL：Duplicate entry '...' for key 'UK_...'，H2：Unique index or primary key violation: "UK_..._INDEX_B ON ..."）。
+ * 主键等其他唯一约束的冲突（例如t_account_seq落后于已有的id）不是用户名被占用
+ */
+@Component
+public class AccountUsernameConstraint {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountUsernameConstraint.class);
+
+    private static final int MYSQL_DUPLICATE_ENTRY = 1062;
+    private static final String SQL_STATE_UNIQUE_VIOLATION = "23505"; // H2、PostgreSQL
+
+    private final DataSource dataSource;
+    private volatile Set<String> indexes; // 小写的索引名，查询成功后不再变化
+
+    public AccountUsernameConstraint(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * e的原因中是否有唯一约束冲突，不区分是哪个约束
+     */
+    public boolean isDuplicateKey(Throwable e) {
+        return duplicateKey(e) != null;
+    }
+
+    /**
+     * e的原因中是否有username上的唯一约束冲突
+     */
+    public boolean isViolatedBy(Throwable e) {
+        SQLException duplicate = duplicateKey(e);
+        if (duplicate == null || duplicate.getMessage() == null)
+            return false;
+        String message = duplicate.getMessage().toLowerCase(Locale.ROOT);
+        for (String index : indexes()) {
+            if (message.contains(index))
+                return true;
+        }
+        return false;
+    }
+
+    private static SQLException duplicateKey(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException) {
+                SQLException sqlException = (SQLException) t;
+                if (sqlException.getErrorCode() == MYSQL_DUPLICATE_ENTRY || SQL_STATE_UNIQUE_VIOLATION.equals(sqlException.getSQLState()))
+                    return sqlException;
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<String> indexes() {
+        Set<String> current = indexes;
+        if (current != null)
+            return current;
+        try {
+            current = (Set<String>) JdbcUtils.extractDatabaseMetaData(dataSource, metaData -> {
+                Set<String> names = new HashSet<>();
+                String table = metaData.storesUpperCaseIdentifiers() ? "T_ACCOUNT" : "t_account";
+                try (ResultSet rs = metaData.getIndexInfo(null, null, table, true, false)) {
+                    while (rs.next()) {
+                        String index = rs.getString("INDEX_NAME");
+                        if (index != null && "username".equalsIgnoreCase(rs.getString("COLUMN_NAME")))
+                            names.add(index.toLowerCase(Locale.ROOT));
+                    }
+                }
+                return names;
+            });
+        } catch (MetaDataAccessException e) {
+            logger.warn("无法读取t_account的索引，不能判断唯一约束冲突是否为用户名已存在", e);
+            return Collections.emptySet(); // 下次再试
+        }
+        if (current.isEmpty())
+            logger.warn("t_account的username上没有唯一索引");
+        else
+            indexes = current;
+        return current;
+    }
+
+}
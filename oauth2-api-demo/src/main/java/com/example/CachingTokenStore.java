@@ -0,0 +1,167 @@
+package com.example;
+
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2RefreshToken;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.TokenStore;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * 在TokenStore前加一层进程内缓存，资源服务器校验token时优先读缓存，
+ * 未命中时才从被代理的TokenStore读取access token和对应的认证信息。
+ * 缓存元素的存活时间不会超过token本身的剩余有效期，token被删除时同步清除缓存。
+ * 只能清除本进程的缓存：多个实例时，其他实例删除的token在本实例上最多还有效access-token缓存的timeToLiveSeconds（见ehcache.xml）
+ */
+public class CachingTokenStore implements TokenStore {
+
+    private final TokenStore delegate;
+    private final AccountTokenStore accountTokenStore;
+    private final Ehcache accessTokens; // access token -> CachedToken
+    private final Ehcache refreshAccessTokens; // refresh token -> access token
+
+    public CachingTokenStore(TokenStore delegate, AccountTokenStore accountTokenStore, Ehcache accessTokens, Ehcache refreshAccessTokens) {
+        this.delegate = delegate;
+        this.accountTokenStore = accountTokenStore;
+        this.accessTokens = accessTokens;
+        this.refreshAccessTokens = refreshAccessTokens;
+    }
+
+    @Override
+    public OAuth2AccessToken readAccessToken(String tokenValue) {
+        CachedToken cached = load(tokenValue);
+        return cached != null ? cached.token : null;
+    }
+
+    @Override
+    public OAuth2Authentication readAuthentication(OAuth2AccessToken token) {
+        return readAuthentication(token.getValue());
+    }
+
+    @Override
+    public OAuth2Authentication readAuthentication(String token) {
+        CachedToken cached = load(token);
+        if (cached != null && cached.authentication != null)
+            return cached.authentication;
+        return delegate.readAuthentication(token);
+    }
+
+    private CachedToken load(String tokenValue) {
+        Element element = accessTokens.get(tokenValue);
+        if (element != null) {
+            CachedToken cached = (CachedToken) element.getObjectValue();
+            if (!cached.token.isExpired())
+                return cached;
+            accessTokens.remove(tokenValue);
+        }
+
+        OAuth2AccessToken token = delegate.readAccessToken(tokenValue);
+        if (token == null || token.isExpired())
+            return token != null ? new CachedToken(token, null) : null; // 过期的token不缓存，交给调用方删除
+
+        OAuth2Authentication authentication = delegate.readAuthentication(token);
+        if (authentication == null)
+            return new CachedToken(token, null);
+
+        CachedToken cached = new CachedToken(token, authentication);
+        Element entry = new Element(tokenValue, cached);
+        int ttl = (int) accessTokens.getCacheConfiguration().getTimeToLiveSeconds();
+        if (token.getExpiration() != null && (ttl == 0 || token.getExpiresIn() < ttl))
+            ttl = Math.max(token.getExpiresIn(), 1);
+        if (ttl > 0)
+            entry.setTimeToLive(ttl);
+        accessTokens.put(entry);
+        if (token.getRefreshToken() != null) {
+            Element mapping = new Element(token.getRefreshToken().getValue(), tokenValue);
+            if (ttl > 0)
+                mapping.setTimeToLive(ttl); // 与缓存的access token同时过期
+            refreshAccessTokens.put(mapping);
+        }
+        return cached;
+    }
+
+    @Override
+    public void storeAccessToken(OAuth2AccessToken token, OAuth2Authentication authentication) {
+        delegate.storeAccessToken(token, authentication);
+        accessTokens.remove(token.getValue());
+    }
+
+    @Override
+    public void removeAccessToken(OAuth2AccessToken token) {
+        delegate.removeAccessToken(token);
+        accessTokens.remove(token.getValue());
+    }
+
+    @Override
+    public void storeRefreshToken(OAuth2RefreshToken refreshToken, OAuth2Authentication authentication) {
+        delegate.storeRefreshToken(refreshToken, authentication);
+    }
+
+    @Override
+    public OAuth2RefreshToken readRefreshToken(String tokenValue) {
+        return delegate.readRefreshToken(tokenValue);
+    }
+
+    @Override
+    public OAuth2Authentication readAuthenticationForRefreshToken(OAuth2RefreshToken token) {
+        return delegate.readAuthenticationForRefreshToken(token);
+    }
+
+    @Override
+    public void removeRefreshToken(OAuth2RefreshToken token) {
+        Collection<?> cached = cachedAccessTokens(token);
+        delegate.removeRefreshToken(token);
+        evict(token, cached);
+    }
+
+    @Override
+    public void removeAccessTokenUsingRefreshToken(OAuth2RefreshToken refreshToken) {
+        Collection<?> cached = cachedAccessTokens(refreshToken); // 删除之前查出对应的access token
+        delegate.removeAccessTokenUsingRefreshToken(refreshToken);
+        evict(refreshToken, cached);
+    }
+
+    private Collection<?> cachedAccessTokens(OAuth2RefreshToken refreshToken) {
+        Element element = refreshAccessTokens.get(refreshToken.getValue());
+        if (element != null)
+            return Collections.singleton(element.getObjectValue());
+        if (accessTokens.getSize() == 0)
+            return Collections.emptyList();
+        return accountTokenStore.accessTokensByRefreshToken(refreshToken.getValue()); // 对应关系已被淘汰，按oauth_access_token.refresh_token查询
+    }
+
+    private void evict(OAuth2RefreshToken refreshToken, Collection<?> cached) {
+        cached.forEach(accessTokens::remove);
+        refreshAccessTokens.remove(refreshToken.getValue());
+    }
+
+    @Override
+    public OAuth2AccessToken getAccessToken(OAuth2Authentication authentication) {
+        return delegate.getAccessToken(authentication);
+    }
+
+    @Override
+    public Collection<OAuth2AccessToken> findTokensByClientIdAndUserName(String clientId, String userName) {
+        return delegate.findTokensByClientIdAndUserName(clientId, userName);
+    }
+
+    @Override
+    public Collection<OAuth2AccessToken> findTokensByClientId(String clientId) {
+        return delegate.findTokensByClientId(clientId);
+    }
+
+    private static class CachedToken {
+
+        private final OAuth2AccessToken token;
+        private final OAuth2Authentication authentication;
+
+        CachedToken(OAuth2AccessToken token, OAuth2Authentication authentication) {
+            this.token = token;
+            this.authentication = authentication;
+        }
+    }
+
+}
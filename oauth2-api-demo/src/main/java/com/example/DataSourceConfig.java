@@ -0,0 +1,49 @@
+package com.example;
+
+import org.apache.tomcat.jdbc.pool.PoolProperties;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+
+/**
+ * 配置了account.datasource.replica.urls时启用读写分离，应用中注入的DataSource变为：
+ * LazyConnectionDataSourceProxy -> ReplicaRoutingDataSource -> 主库（spring.datasource.*）或从库。
+ * 连接池不单独注册为DataSource，否则spring boot初始化数据库脚本时无法确定使用哪一个
+ */
+@Configuration
+@ConditionalOnProperty(name = "account.datasource.replica.urls")
+public class DataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties(prefix = "spring.datasource.tomcat")
+    public PoolProperties primaryPoolProperties(DataSourceProperties properties) {
+        PoolProperties poolProperties = new PoolProperties();
+        poolProperties.setUrl(properties.determineUrl());
+        poolProperties.setDriverClassName(properties.determineDriverClassName());
+        poolProperties.setUsername(properties.determineUsername());
+        poolProperties.setPassword(properties.determinePassword());
+        return poolProperties;
+    }
+
+    @Bean
+    public ReplicaDataSources replicaDataSources(AccountDataSourcePools accountDataSourcePools, PoolProperties primaryPoolProperties,
+                                                 @Value("${account.datasource.replica.urls}") String[] urls,
+                                                 @Value("${account.datasource.replica.username:${spring.datasource.username:}}") String username,
+                                                 @Value("${account.datasource.replica.password:${spring.datasource.password:}}") String password,
+                                                 @Value("${account.datasource.replica.max-lag-ms:1000}") long maxLagMillis) {
+        return new ReplicaDataSources(accountDataSourcePools, primaryPoolProperties, Arrays.asList(urls), username, password, maxLagMillis);
+    }
+
+    @Bean
+    public DataSource dataSource(ReplicaDataSources replicaDataSources, AccountDataSourceRouting accountDataSourceRouting) {
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(replicaDataSources, accountDataSourceRouting)); // 执行第一条语句时才取连接，这时事务的只读标记已经设置好
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.example;
+
+import org.springframework.security.oauth2.common.OAuth2RefreshToken;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.TokenStore;
+import org.springframework.security.oauth2.provider.token.store.JwtAccessTokenConverter;
+import org.springframework.security.oauth2.provider.token.store.JwtTokenStore;
+
+/**
+ * access token为签名的JWT，校验时只需验签和检查有效期，不访问数据库；
+ * refresh token仍然保存在数据库中，删除后即失效
+ */
+public class JwtAccountTokenStore extends JwtTokenStore {
+
+    private final TokenStore refreshTokenStore;
+
+    public JwtAccountTokenStore(JwtAccessTokenConverter jwtAccessTokenConverter, TokenStore refreshTokenStore) {
+        super(jwtAccessTokenConverter);
+        this.refreshTokenStore = refreshTokenStore;
+    }
+
+    @Override
+    public void storeRefreshToken(OAuth2RefreshToken refreshToken, OAuth2Authentication authentication) {
+        refreshTokenStore.storeRefreshToken(refreshToken, authentication);
+    }
+
+    @Override
+    public OAuth2RefreshToken readRefreshToken(String tokenValue) {
+        return refreshTokenStore.readRefreshToken(tokenValue);
+    }
+
+    @Override
+    public OAuth2Authentication readAuthenticationForRefreshToken(OAuth2RefreshToken token) {
+        return refreshTokenStore.readAuthenticationForRefreshToken(token);
+    }
+
+    @Override
+    public void removeRefreshToken(OAuth2RefreshToken token) {
+        refreshTokenStore.removeRefreshToken(token);
+    }
+
+}
@@ -3,19 +3,13 @@ package com.example;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.oauth2.config.annotation.configurers.ClientDetailsServiceConfigurer;
 import org.springframework.security.oauth2.config.annotation.web.configuration.AuthorizationServerConfigurerAdapter;
 import org.springframework.security.oauth2.config.annotation.web.configuration.EnableAuthorizationServer;
 import org.springframework.security.oauth2.config.annotation.web.configuration.ResourceServerConfiguration;
 import org.springframework.security.oauth2.config.annotation.web.configurers.AuthorizationServerEndpointsConfigurer;
-import org.springframework.security.oauth2.provider.ClientDetails;
-import org.springframework.security.oauth2.provider.ClientDetailsService;
-import org.springframework.security.oauth2.provider.ClientRegistrationException;
-import org.springframework.security.oauth2.provider.client.BaseClientDetails;
-
-import java.util.ArrayList;
-import java.util.List;
+import org.springframework.security.oauth2.provider.token.TokenStore;
+import org.springframework.security.oauth2.provider.token.store.JwtAccessTokenConverter;
 
 /**
  * Created by sunxiaopeng on 2016/11/22.
@@ -32,47 +26,28 @@ public class OAuth2Config extends AuthorizationServerConfigurerAdapter { // 1
     private AuthenticationManager authenticationManager; // 2
 
     @Autowired
-    private AccountTokenStore accountTokenStore;
+    private AccountClientDetailsService accountClientDetailsService;
+
+    @Autowired
+    private TokenStore tokenStore;
+
+    @Autowired(required = false)
+    private JwtAccessTokenConverter jwtAccessTokenConverter;
 
     @Override
     public void configure(AuthorizationServerEndpointsConfigurer endpoints) throws Exception {
         endpoints
                 .authenticationManager(this.authenticationManager) // 3
                 .userDetailsService(accountUserDetailsService)
-                .tokenStore(accountTokenStore)
+                .tokenStore(tokenStore)
         ;
+        if (jwtAccessTokenConverter != null)
+            endpoints.accessTokenConverter(jwtAccessTokenConverter); // 签发JWT格式的token
     }
 
     @Override
     public void configure(ClientDetailsServiceConfigurer clients) throws Exception {
-        clients.withClientDetails(new ClientDetailsService() {
-            @Override
-            public ClientDetails loadClientByClientId(String clientId) throws ClientRegistrationException {
-                BaseClientDetails client = new BaseClientDetails();
-
-                client.setClientId("ios-client");
-                client.setClientSecret("ios");
-
-                List<String> resourceIds = new ArrayList<>();
-                resourceIds.add("api-accounts");
-                client.setResourceIds(resourceIds);
-
-                List<String> scopes = new ArrayList<>();
-                scopes.add("read");
-                scopes.add("write");
-                client.setScope(scopes);
-
-                List<String> authorizedGrantTypes = new ArrayList<>();
-                authorizedGrantTypes.add("password");
-                authorizedGrantTypes.add("refresh_token");
-                client.setAuthorizedGrantTypes(authorizedGrantTypes);
-
-                client.setAuthorities(AuthorityUtils.createAuthorityList("IOS_USER"));
-                client.setAccessTokenValiditySeconds(60 * 60 * 24);
-
-                return client;
-            }
-        });
+        clients.withClientDetails(accountClientDetailsService); // 客户端定义见clients.json
 
 //        clients
 //                .inMemory()
@@ -0,0 +1,184 @@
+package com.example;
+
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.apache.tomcat.jdbc.pool.PoolProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 读写分离时主库和各个从库的连接池，按健康状态选择从库（lookupKey），从库复制主库的连接池配置，只替换url和用户名、密码。
+ * 定时检查从库：主库的t_replica_heartbeat中写入当前时间作为心跳，记录写入过的心跳；从库读到心跳b时，
+ * 比b新的第一个心跳是从库还没有复制的最早的写入，它距今的时间即为复制延迟（下限），从库读到最新的心跳时延迟为0。
+ * 不能直接用b与当前时间之差：刚写入的心跳通常还没有复制，b是上一次检查写入的，会把检查间隔算作延迟。
+ * 查询失败或延迟超过maxLagMillis的从库暂停使用，恢复后自动重新加入；maxLagMillis不大于0时只检查连接是否可用。
+ * 启动后第一次检查完成之前，所有读取都访问主库。连接池登记到AccountDataSourcePools，由其发布连接池指标、预热和关闭
+ */
+public class ReplicaDataSources implements PublicMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaDataSources.class);
+
+    private static final int CHECK_TIMEOUT_SECONDS = 2;
+
+    private final javax.sql.DataSource primary;
+    private final JdbcTemplate primaryJdbcTemplate;
+    private final List<Replica> replicas;
+    private final long maxLagMillis;
+    private final NavigableSet<Long> beats = new ConcurrentSkipListSet<>(); // 写入主库的心跳
+
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder primaryConnections = new LongAdder();
+    private final LongAdder replicaConnections = new LongAdder();
+
+    public ReplicaDataSources(AccountDataSourcePools pools, PoolProperties primaryProperties, List<String> urls,
+                              String username, String password, long maxLagMillis) {
+        this.primary = pools.register("account", new DataSource(primaryProperties), true);
+        this.primaryJdbcTemplate = jdbcTemplate(primary);
+        this.maxLagMillis = maxLagMillis;
+
+        List<Replica> replicas = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            PoolProperties properties = new PoolProperties();
+            BeanUtils.copyProperties(primaryProperties, properties);
+            properties.setDbProperties((Properties) primaryProperties.getDbProperties().clone());
+            properties.setUrl(url.trim());
+            properties.setUsername(username);
+            properties.setPassword(password);
+            properties.setName("replica-" + replicas.size());
+            replicas.add(new Replica(properties.getName(), pools.register(properties.getName(), new DataSource(properties), false))); // 从库不可用时不影响启动
+        }
+        this.replicas = Collections.unmodifiableList(replicas);
+
+        if (maxLagMillis > 0) {
+            primaryJdbcTemplate.execute("create table if not exists t_replica_heartbeat (id int not null primary key, beat bigint not null)");
+            beats.addAll(primaryJdbcTemplate.queryForList("select beat from t_replica_heartbeat where id = 1", Long.class)); // 启动前最后的心跳，从库比它旧时延迟至少为其距今的时间
+        }
+    }
+
+    public javax.sql.DataSource primary() {
+        return primary;
+    }
+
+    List<Replica> replicas() {
+        return replicas;
+    }
+
+    /**
+     * 返回本次连接使用的从库名称，不能使用从库或没有健康的从库时返回null，即使用主库
+     */
+    String lookupKey(boolean replicaAllowed) {
+        if (replicaAllowed && !replicas.isEmpty()) {
+            int start = next.getAndIncrement() & Integer.MAX_VALUE;
+            for (int i = 0; i < replicas.size(); i++) {
+                Replica replica = replicas.get((start + i) % replicas.size());
+                if (replica.healthy) {
+                    replicaConnections.increment();
+                    return replica.name;
+                }
+            }
+        }
+        primaryConnections.increment();
+        return null;
+    }
+
+    /**
+     * 上次检查时各个从库中最大的复制延迟（毫秒），不包括无法访问的从库，用于限制批量写入的速度
+     */
+    public long replicationLagMillis() {
+        long max = 0;
+        for (Replica replica : replicas)
+            max = Math.max(max, replica.lagMillis);
+        return max;
+    }
+
+    @Scheduled(fixedDelayString = "${account.datasource.replica.check-interval-ms:1000}")
+    public void check() {
+        long now = System.currentTimeMillis();
+        if (maxLagMillis > 0) {
+            try {
+                if (primaryJdbcTemplate.update("update t_replica_heartbeat set beat = ? where id = 1", now) == 0)
+                    primaryJdbcTemplate.update("insert into t_replica_heartbeat (id, beat) values (1, ?)", now);
+            } catch (DataAccessException e) {
+                logger.warn("写入主库心跳失败", e);
+                return; // 无法判断从库延迟，保持上次的检查结果
+            }
+            beats.add(now);
+            Long horizon = beats.floor(now - maxLagMillis);
+            if (horizon != null)
+                beats.headSet(horizon).clear(); // 比horizon旧的心跳算出的延迟都超过maxLagMillis，留下horizon即可
+        }
+
+        for (Replica replica : replicas) {
+            boolean healthy;
+            try {
+                if (maxLagMillis > 0) {
+                    Long beat = replica.jdbcTemplate.queryForObject("select beat from t_replica_heartbeat where id = 1", Long.class);
+                    Long missed = beats.higher(beat); // 从库还没有复制的最早的心跳
+                    replica.lagMillis = missed != null ? Math.max(System.currentTimeMillis() - missed, 0) : 0;
+                    healthy = replica.lagMillis <= maxLagMillis;
+                } else {
+                    replica.jdbcTemplate.execute("select 1");
+                    healthy = true;
+                }
+            } catch (DataAccessException e) {
+                replica.lagMillis = -1;
+                healthy = false;
+            }
+
+            if (healthy != replica.healthy)
+                logger.warn(healthy ? "从库{}恢复，复制延迟{}ms" : "从库{}暂停使用，复制延迟{}ms（-1表示无法访问）", replica.name, replica.lagMillis);
+            replica.healthy = healthy;
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>(replicas.size() * 2 + 2);
+        metrics.add(new Metric<Number>("datasource.routing.primary", primaryConnections.sum()));
+        metrics.add(new Metric<Number>("datasource.routing.replica", replicaConnections.sum()));
+        for (Replica replica : replicas) {
+            metrics.add(new Metric<Number>("datasource.routing." + replica.name + ".healthy", replica.healthy ? 1 : 0));
+            metrics.add(new Metric<Number>("datasource.routing." + replica.name + ".lag", replica.lagMillis));
+        }
+        return metrics;
+    }
+
+    private static JdbcTemplate jdbcTemplate(javax.sql.DataSource dataSource) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setQueryTimeout(CHECK_TIMEOUT_SECONDS);
+        return jdbcTemplate;
+    }
+
+    static final class Replica {
+
+        final String name;
+        final javax.sql.DataSource dataSource;
+        private final JdbcTemplate jdbcTemplate;
+
+        private volatile boolean healthy;
+        private volatile long lagMillis = -1;
+
+        Replica(String name, javax.sql.DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.jdbcTemplate = jdbcTemplate(dataSource);
+        }
+
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.example;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 在主库和从库之间选择连接，AccountDataSourceRouting允许时由ReplicaDataSources选择一个健康的从库。
+ * 需要包装在LazyConnectionDataSourceProxy中，否则事务开始取连接时还不知道事务是否只读
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final ReplicaDataSources replicaDataSources;
+    private final AccountDataSourceRouting accountDataSourceRouting;
+
+    public ReplicaRoutingDataSource(ReplicaDataSources replicaDataSources, AccountDataSourceRouting accountDataSourceRouting) {
+        this.replicaDataSources = replicaDataSources;
+        this.accountDataSourceRouting = accountDataSourceRouting;
+
+        Map<Object, Object> targets = new HashMap<>();
+        for (ReplicaDataSources.Replica replica : replicaDataSources.replicas())
+            targets.put(replica.name, replica.dataSource);
+        setDefaultTargetDataSource(replicaDataSources.primary()); // lookup key为null时使用主库
+        setTargetDataSources(targets);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return replicaDataSources.lookupKey(accountDataSourceRouting.replicaAllowed());
+    }
+
+}
@@ -1,11 +1,15 @@
 package com.example;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.oauth2.config.annotation.web.configuration.EnableResourceServer;
 import org.springframework.security.oauth2.config.annotation.web.configuration.ResourceServerConfigurerAdapter;
 import org.springframework.security.oauth2.config.annotation.web.configurers.ResourceServerSecurityConfigurer;
+import org.springframework.security.oauth2.provider.token.TokenStore;
 
 /**
  * Created by sunxiaopeng on 2016/11/22.
@@ -16,13 +20,15 @@ import org.springframework.security.oauth2.config.annotation.web.configurers.Res
 public class ResourceServerConfig extends ResourceServerConfigurerAdapter {
 
     @Autowired
-    private AccountTokenStore accountTokenStore;
+    private TokenStore tokenStore;
 
     @Override
     public void configure(HttpSecurity http) throws Exception {
         http
                 .authorizeRequests()
                 .antMatchers("/api/accounts/me").access("#oauth2.clientHasRole('IOS_USER')")
+                .antMatchers("/api/accounts/export", "/api/accounts/batch").hasAuthority("ADMIN") // 导出、批量创建和批量删除只允许管理员
+                .antMatchers("/manage/**").hasAuthority("ADMIN")
         ;
     }
 
@@ -30,7 +36,15 @@ public class ResourceServerConfig extends ResourceServerConfigurerAdapter {
     public void configure(ResourceServerSecurityConfigurer resources) throws Exception {
         resources
                 .resourceId("api-accounts")
-                .tokenStore(accountTokenStore)
+                .tokenStore(tokenStore)
         ;
     }
+
+    @Bean
+    public FilterRegistrationBean accountRateLimitFilter(AccountRateLimiter accountRateLimiter, SecurityProperties securityProperties) {
+        FilterRegistrationBean registration = new FilterRegistrationBean(new AccountRateLimitFilter(accountRateLimiter));
+        registration.setOrder(securityProperties.getFilterOrder() - 1); // 在springSecurityFilterChain之前，/oauth/token和API都先限流再认证
+        registration.setEnabled(accountRateLimiter.isEnabled());
+        return registration;
+    }
 }
@@ -0,0 +1,67 @@
+package com.example;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 包装连接池，记录取得连接的等待时间（latency.datasource.pool.{名称}.wait）和取不到连接的次数，
+ * 只依赖javax.sql.DataSource，与具体的连接池实现无关
+ */
+public class TimedDataSource extends DelegatingDataSource {
+
+    private final String name;
+    private final AccountLatencyMetrics accountLatencyMetrics;
+    private final AccountLatencyMetrics.Timer wait;
+    private final LongAdder timeouts = new LongAdder();
+
+    public TimedDataSource(String name, DataSource pool, AccountLatencyMetrics accountLatencyMetrics) {
+        super(pool);
+        this.name = name;
+        this.accountLatencyMetrics = accountLatencyMetrics;
+        this.wait = accountLatencyMetrics.timer("datasource.pool." + name + ".wait");
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 等待超时或连接失败，没有取得连接的次数
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return getTargetDataSource().getConnection();
+        } catch (SQLException e) {
+            timeouts.increment();
+            throw e;
+        } finally {
+            if (accountLatencyMetrics.isEnabled())
+                wait.record(start);
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return getTargetDataSource().getConnection(username, password);
+        } catch (SQLException e) {
+            timeouts.increment();
+            throw e;
+        } finally {
+            if (accountLatencyMetrics.isEnabled())
+                wait.record(start);
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.example;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * 把spring boot创建的连接池（DataSource bean）登记到AccountDataSourcePools，bean替换为包装后的TimedDataSource，
+ * AccountRepository和AccountTokenStore只依赖javax.sql.DataSource。
+ * 读写分离时DataSource bean是LazyConnectionDataSourceProxy，连接池由ReplicaDataSources登记，这里跳过
+ */
+@Component
+public class TimedDataSourcePostProcessor implements BeanPostProcessor, BeanFactoryAware {
+
+    private BeanFactory beanFactory;
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (!(bean instanceof DataSource) || bean instanceof DelegatingDataSource)
+            return bean;
+        // 用到时才获取，避免AccountDataSourcePools及其依赖过早创建而不能被其他BeanPostProcessor处理；
+        // 包装后spring无法再推断连接池的close方法，由AccountDataSourcePools在关闭时负责
+        return beanFactory.getBean(AccountDataSourcePools.class).register("account", (DataSource) bean, true);
+    }
+
+}
@@ -0,0 +1,184 @@
+package com.example;
+
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2RefreshToken;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.TokenStore;
+
+import java.util.Collection;
+
+/**
+ * 记录被代理的TokenStore每个操作的耗时（token-store.{方法名}）。
+ * AccountTokenStore在授权服务器配置阶段就被创建，不会经过AOP代理，所以在TokenStoreConfig中直接包装
+ */
+public class TimedTokenStore implements TokenStore {
+
+    private final TokenStore delegate;
+    private final AccountLatencyMetrics accountLatencyMetrics;
+
+    private final AccountLatencyMetrics.Timer readAuthentication;
+    private final AccountLatencyMetrics.Timer storeAccessToken;
+    private final AccountLatencyMetrics.Timer readAccessToken;
+    private final AccountLatencyMetrics.Timer removeAccessToken;
+    private final AccountLatencyMetrics.Timer storeRefreshToken;
+    private final AccountLatencyMetrics.Timer readRefreshToken;
+    private final AccountLatencyMetrics.Timer readAuthenticationForRefreshToken;
+    private final AccountLatencyMetrics.Timer removeRefreshToken;
+    private final AccountLatencyMetrics.Timer removeAccessTokenUsingRefreshToken;
+    private final AccountLatencyMetrics.Timer getAccessToken;
+    private final AccountLatencyMetrics.Timer findTokensByClientIdAndUserName;
+    private final AccountLatencyMetrics.Timer findTokensByClientId;
+
+    public TimedTokenStore(TokenStore delegate, AccountLatencyMetrics accountLatencyMetrics) {
+        this.delegate = delegate;
+        this.accountLatencyMetrics = accountLatencyMetrics;
+        this.readAuthentication = accountLatencyMetrics.timer("token-store.readAuthentication");
+        this.storeAccessToken = accountLatencyMetrics.timer("token-store.storeAccessToken");
+        this.readAccessToken = accountLatencyMetrics.timer("token-store.readAccessToken");
+        this.removeAccessToken = accountLatencyMetrics.timer("token-store.removeAccessToken");
+        this.storeRefreshToken = accountLatencyMetrics.timer("token-store.storeRefreshToken");
+        this.readRefreshToken = accountLatencyMetrics.timer("token-store.readRefreshToken");
+        this.readAuthenticationForRefreshToken = accountLatencyMetrics.timer("token-store.readAuthenticationForRefreshToken");
+        this.removeRefreshToken = accountLatencyMetrics.timer("token-store.removeRefreshToken");
+        this.removeAccessTokenUsingRefreshToken = accountLatencyMetrics.timer("token-store.removeAccessTokenUsingRefreshToken");
+        this.getAccessToken = accountLatencyMetrics.timer("token-store.getAccessToken");
+        this.findTokensByClientIdAndUserName = accountLatencyMetrics.timer("token-store.findTokensByClientIdAndUserName");
+        this.findTokensByClientId = accountLatencyMetrics.timer("token-store.findTokensByClientId");
+    }
+
+    @Override
+    public OAuth2Authentication readAuthentication(OAuth2AccessToken token) {
+        long start = System.nanoTime();
+        try {
+            return delegate.readAuthentication(token);
+        } finally {
+            record(readAuthentication, start);
+        }
+    }
+
+    @Override
+    public OAuth2Authentication readAuthentication(String token) {
+        long start = System.nanoTime();
+        try {
+            return delegate.readAuthentication(token);
+        } finally {
+            record(readAuthentication, start);
+        }
+    }
+
+    @Override
+    public void storeAccessToken(OAuth2AccessToken token, OAuth2Authentication authentication) {
+        long start = System.nanoTime();
+        try {
+            delegate.storeAccessToken(token, authentication);
+        } finally {
+            record(storeAccessToken, start);
+        }
+    }
+
+    @Override
+    public OAuth2AccessToken readAccessToken(String tokenValue) {
+        long start = System.nanoTime();
+        try {
+            return delegate.readAccessToken(tokenValue);
+        } finally {
+            record(readAccessToken, start);
+        }
+    }
+
+    @Override
+    public void removeAccessToken(OAuth2AccessToken token) {
+        long start = System.nanoTime();
+        try {
+            delegate.removeAccessToken(token);
+        } finally {
+            record(removeAccessToken, start);
+        }
+    }
+
+    @Override
+    public void storeRefreshToken(OAuth2RefreshToken refreshToken, OAuth2Authentication authentication) {
+        long start = System.nanoTime();
+        try {
+            delegate.storeRefreshToken(refreshToken, authentication);
+        } finally {
+            record(storeRefreshToken, start);
+        }
+    }
+
+    @Override
+    public OAuth2RefreshToken readRefreshToken(String tokenValue) {
+        long start = System.nanoTime();
+        try {
+            return delegate.readRefreshToken(tokenValue);
+        } finally {
+            record(readRefreshToken, start);
+        }
+    }
+
+    @Override
+    public OAuth2Authentication readAuthenticationForRefreshToken(OAuth2RefreshToken token) {
+        long start = System.nanoTime();
+        try {
+            return delegate.readAuthenticationForRefreshToken(token);
+        } finally {
+            record(readAuthenticationForRefreshToken, start);
+        }
+    }
+
+    @Override
+    public void removeRefreshToken(OAuth2RefreshToken token) {
+        long start = System.nanoTime();
+        try {
+            delegate.removeRefreshToken(token);
+        } finally {
+            record(removeRefreshToken, start);
+        }
+    }
+
+    @Override
+    public void removeAccessTokenUsingRefreshToken(OAuth2RefreshToken refreshToken) {
+        long start = System.nanoTime();
+        try {
+            delegate.removeAccessTokenUsingRefreshToken(refreshToken);
+        } finally {
+            record(removeAccessTokenUsingRefreshToken, start);
+        }
+    }
+
+    @Override
+    public OAuth2AccessToken getAccessToken(OAuth2Authentication authentication) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getAccessToken(authentication);
+        } finally {
+            record(getAccessToken, start);
+        }
+    }
+
+    @Override
+    public Collection<OAuth2AccessToken> findTokensByClientIdAndUserName(String clientId, String userName) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findTokensByClientIdAndUserName(clientId, userName);
+        } finally {
+            record(findTokensByClientIdAndUserName, start);
+        }
+    }
+
+    @Override
+    public Collection<OAuth2AccessToken> findTokensByClientId(String clientId) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findTokensByClientId(clientId);
+        } finally {
+            record(findTokensByClientId, start);
+        }
+    }
+
+    private void record(AccountLatencyMetrics.Timer timer, long start) {
+        if (accountLatencyMetrics.isEnabled())
+            timer.record(start);
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.example;
+
+import net.sf.ehcache.CacheManager;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.security.oauth2.provider.token.TokenStore;
+import org.springframework.security.oauth2.provider.token.store.JwtAccessTokenConverter;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 授权服务器和资源服务器实际使用的TokenStore，由account.token-store.type决定：
+ * jdbc - token保存在数据库中，每次校验都要查询（可由account.token-store.cache.enabled开启缓存）
+ * jwt - access token为签名的JWT，本地校验；refresh token仍保存在数据库中
+ * write-behind - 内存中的token为准，异步批量写入数据库，启动时从数据库恢复，只能单实例运行，见WriteBehindTokenStore
+ */
+@Configuration
+public class TokenStoreConfig {
+
+    private static final int MIN_SIGNING_KEY_BYTES = 32;
+
+    @Value("${account.token-store.type:jdbc}")
+    private String type;
+
+    @Value("${account.token-store.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Bean
+    @Primary
+    public TokenStore tokenStore(AccountTokenStore accountTokenStore, ObjectProvider<JwtAccessTokenConverter> jwtAccessTokenConverter,
+                                 ObjectProvider<WriteBehindTokenStore> writeBehindTokenStore, AccountLatencyMetrics accountLatencyMetrics) {
+        if ("write-behind".equals(type))
+            return writeBehindTokenStore.getObject(); // token都在内存中，不需要再缓存
+
+        TokenStore store = new TimedTokenStore(accountTokenStore, accountLatencyMetrics); // 只记录数据库访问的耗时，缓存命中不计入
+        if ("jwt".equals(type))
+            return new JwtAccountTokenStore(jwtAccessTokenConverter.getObject(), store);
+
+        if (!cacheEnabled)
+            return store;
+
+        CacheManager cacheManager = CacheManager.create(); // 与hibernate二级缓存共用同一个CacheManager
+        return new CachingTokenStore(store, accountTokenStore, cacheManager.getEhcache("access-token"), cacheManager.getEhcache("refresh-access-token"));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "account.token-store.type", havingValue = "write-behind")
+    public WriteBehindTokenStoreLease writeBehindTokenStoreLease(DataSource dataSource, AccountDataSourcePools accountDataSourcePools,
+                                                                 @Value("${account.token-store.write-behind.lease-renew-ms:5000}") long renewMillis) throws InterruptedException {
+        return new WriteBehindTokenStoreLease(accountDataSourcePools.tokenStore(dataSource), renewMillis);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "account.token-store.type", havingValue = "write-behind")
+    public WriteBehindTokenStore writeBehindTokenStore(WriteBehindTokenStoreLease writeBehindTokenStoreLease, // 先取得租约再从数据库恢复，关闭时写完队列再释放
+                                                       AccountTokenStore accountTokenStore, DataSource dataSource,
+                                                       AccountDataSourcePools accountDataSourcePools, AccountLatencyMetrics accountLatencyMetrics,
+                                                       @Value("${account.token-store.write-behind.queue-capacity:100000}") int queueCapacity,
+                                                       @Value("${account.token-store.write-behind.batch-size:500}") int batchSize,
+                                                       @Value("${account.token-store.write-behind.sync-timeout-ms:0}") long syncTimeoutMillis,
+                                                       @Value("${account.token-store.write-behind.retry-interval-ms:1000}") long retryIntervalMillis) {
+        return new WriteBehindTokenStore(accountTokenStore, new TimedTokenStore(accountTokenStore, accountLatencyMetrics), // 内存中没有时读取数据库
+                accountDataSourcePools.tokenStore(dataSource), accountLatencyMetrics, queueCapacity, batchSize, syncTimeoutMillis, retryIntervalMillis);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "account.token-store.type", havingValue = "jwt")
+    public JwtAccessTokenConverter jwtAccessTokenConverter(@Value("${account.token-store.jwt.signing-key:}") String signingKey) {
+        if (signingKey.getBytes(StandardCharsets.UTF_8).length < MIN_SIGNING_KEY_BYTES) // 公开或过短的密钥任何人都可以自己签发token
+            throw new IllegalStateException("account.token-store.type=jwt时必须配置至少" + MIN_SIGNING_KEY_BYTES + "字节的account.token-store.jwt.signing-key");
+        JwtAccessTokenConverter converter = new JwtAccessTokenConverter();
+        converter.setSigningKey(signingKey); // HMACSHA256签名，授权服务器和资源服务器使用同一个密钥
+        converter.setAccessTokenConverter(new AccountAccessTokenConverter());
+        return converter;
+    }
+
+}
@@ -0,0 +1,651 @@
+package com.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.security.oauth2.common.ExpiringOAuth2RefreshToken;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2RefreshToken;
+import org.springframework.security.oauth2.common.util.SerializationUtils;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.AuthenticationKeyGenerator;
+import org.springframework.security.oauth2.provider.token.DefaultAuthenticationKeyGenerator;
+import org.springframework.security.oauth2.provider.token.TokenStore;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 为大量签发token优化的TokenStore（account.token-store.type=write-behind）：内存中的token为准，
+ * 签发、删除时只修改内存并放入写入队列，由单独的线程批量写入数据库，表结构与JdbcTokenStore相同。
+ * 一批中对同一个token的多次修改只写入最终状态，每批最多6条批量语句，在一个事务中执行，暂时性的错误整批重试，
+ * 其他错误时拆分这一批，丢弃写不进去的修改（计入failures、dropped），不阻塞后面的写入。
+ * 启动时从数据库恢复未过期的token。只能单实例运行：其他实例的删除本实例看不到，由WriteBehindTokenStoreLease保证同一个数据库只有一个实例使用。
+ * syncTimeoutMillis为0时签发不等待写入，进程崩溃会丢失队列中所有尚未提交的签发（队列可能有queueCapacity个，
+ * 这些客户端重新获取token即可）；大于0时等待所在的批次提交，同一批中的请求共享一次提交。
+ * 删除（注销、刷新）无论syncTimeoutMillis是多少都等待提交，否则崩溃后recover()会把已删除的token重新加载为有效
+ */
+public class WriteBehindTokenStore implements TokenStore, PublicMetrics, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindTokenStore.class);
+
+    private static final int STRIPES = 64;
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long REMOVAL_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10); // syncTimeoutMillis为0时删除等待提交的时间
+
+    private static final int[] ACCESS_TOKEN_TYPES = {Types.VARCHAR, Types.VARBINARY, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARBINARY, Types.VARCHAR};
+    private static final int[] REFRESH_TOKEN_TYPES = {Types.VARCHAR, Types.VARBINARY, Types.VARBINARY};
+
+    private final AccountTokenStore accountTokenStore; // 计算token_id，与JdbcTokenStore一致
+    private final TokenStore database; // 内存中没有时从数据库读取
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AuthenticationKeyGenerator authenticationKeyGenerator = new DefaultAuthenticationKeyGenerator();
+    private final AccountLatencyMetrics accountLatencyMetrics;
+    private final AccountLatencyMetrics.Timer batchTimer;
+    private final int batchSize;
+    private final long syncTimeoutMillis;
+    private final long removalTimeoutMillis;
+    private final long retryIntervalMillis;
+
+    // 按authentication key分段加锁，保证同一个认证的token和各个索引一起修改
+    private final Object[] locks = new Object[STRIPES];
+    private final ConcurrentMap<String, AccessEntry> accessTokens = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> accessTokenByAuthentication = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> accessTokenByRefreshToken = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, RefreshEntry> refreshTokens = new ConcurrentHashMap<>();
+    // 已删除但尚未写入数据库的token，不能再从数据库读回内存
+    private final ConcurrentMap<String, Write> pendingRemovals = new ConcurrentHashMap<>();
+
+    private final BlockingQueue<Write> queue;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public WriteBehindTokenStore(AccountTokenStore accountTokenStore, TokenStore database, DataSource dataSource,
+                                 AccountLatencyMetrics accountLatencyMetrics, int queueCapacity, int batchSize,
+                                 long syncTimeoutMillis, long retryIntervalMillis) {
+        this.accountTokenStore = accountTokenStore;
+        this.database = database;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.accountLatencyMetrics = accountLatencyMetrics;
+        this.batchTimer = accountLatencyMetrics.timer("token-store.write-behind.batch");
+        this.batchSize = batchSize;
+        this.syncTimeoutMillis = syncTimeoutMillis;
+        this.removalTimeoutMillis = syncTimeoutMillis > 0 ? syncTimeoutMillis : REMOVAL_TIMEOUT_MILLIS;
+        this.retryIntervalMillis = retryIntervalMillis;
+        for (int i = 0; i < STRIPES; i++)
+            locks[i] = new Object();
+        this.queue = new LinkedBlockingQueue<>(queueCapacity); // 数据库长时间不可用时队列满，签发阻塞
+
+        recover();
+        this.writer = new Thread(this::write, "token-write-behind");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public OAuth2Authentication readAuthentication(OAuth2AccessToken token) {
+        return readAuthentication(token.getValue());
+    }
+
+    @Override
+    public OAuth2Authentication readAuthentication(String token) {
+        AccessEntry entry = accessEntry(token);
+        return entry != null ? entry.authentication : null;
+    }
+
+    @Override
+    public void storeAccessToken(OAuth2AccessToken token, OAuth2Authentication authentication) {
+        String authenticationKey = authenticationKeyGenerator.extractKey(authentication);
+        Write replacedRemoval = null;
+        synchronized (lock(authenticationKey)) {
+            String replaced = accessTokenByAuthentication.get(authenticationKey);
+            if (replaced != null && !replaced.equals(token.getValue())) { // 数据库中authentication_id是主键，同一个认证只保留最新的token
+                replacedRemoval = new Write(WriteType.REMOVE_ACCESS_TOKEN, replaced, null, null, null, null);
+                pendingRemovals.put(replaced, replacedRemoval);
+                forget(replaced);
+            }
+            AccessEntry previous = accessTokens.put(token.getValue(), new AccessEntry(token, authentication, authenticationKey));
+            if (previous != null && previous.token.getRefreshToken() != null)
+                accessTokenByRefreshToken.remove(previous.token.getRefreshToken().getValue(), token.getValue());
+            accessTokenByAuthentication.put(authenticationKey, token.getValue());
+            if (token.getRefreshToken() != null)
+                accessTokenByRefreshToken.put(token.getRefreshToken().getValue(), token.getValue());
+            pendingRemovals.remove(token.getValue());
+        }
+        if (replacedRemoval != null)
+            enqueue(replacedRemoval, 0); // 被新token替换的token，与签发一起提交即可
+        enqueue(new Write(WriteType.STORE_ACCESS_TOKEN, token.getValue(), token, null, authentication, authenticationKey), syncTimeoutMillis);
+    }
+
+    @Override
+    public OAuth2AccessToken readAccessToken(String tokenValue) {
+        AccessEntry entry = accessEntry(tokenValue);
+        return entry != null ? entry.token : null;
+    }
+
+    @Override
+    public void removeAccessToken(OAuth2AccessToken token) {
+        removeAccessToken(token.getValue());
+    }
+
+    private void removeAccessToken(String tokenValue) {
+        enqueue(removal(tokenValue), removalTimeoutMillis);
+    }
+
+    /**
+     * 从内存中删除access token，返回需要写入数据库的删除
+     */
+    private Write removal(String tokenValue) {
+        Write write = new Write(WriteType.REMOVE_ACCESS_TOKEN, tokenValue, null, null, null, null);
+        pendingRemovals.put(tokenValue, write);
+        AccessEntry entry = accessTokens.get(tokenValue);
+        if (entry != null) {
+            synchronized (lock(entry.authenticationKey)) {
+                forget(tokenValue);
+            }
+        }
+        return write;
+    }
+
+    @Override
+    public void storeRefreshToken(OAuth2RefreshToken refreshToken, OAuth2Authentication authentication) {
+        refreshTokens.put(refreshToken.getValue(), new RefreshEntry(refreshToken, authentication));
+        pendingRemovals.remove(refreshToken.getValue());
+        enqueue(new Write(WriteType.STORE_REFRESH_TOKEN, refreshToken.getValue(), null, refreshToken, authentication, null), syncTimeoutMillis);
+    }
+
+    @Override
+    public OAuth2RefreshToken readRefreshToken(String tokenValue) {
+        RefreshEntry entry = refreshEntry(tokenValue);
+        return entry != null ? entry.token : null;
+    }
+
+    @Override
+    public OAuth2Authentication readAuthenticationForRefreshToken(OAuth2RefreshToken token) {
+        RefreshEntry entry = refreshEntry(token.getValue());
+        return entry != null ? entry.authentication : null;
+    }
+
+    @Override
+    public void removeRefreshToken(OAuth2RefreshToken token) {
+        Write write = new Write(WriteType.REMOVE_REFRESH_TOKEN, token.getValue(), null, null, null, null);
+        pendingRemovals.put(token.getValue(), write);
+        refreshTokens.remove(token.getValue());
+        enqueue(write, removalTimeoutMillis);
+    }
+
+    @Override
+    public void removeAccessTokenUsingRefreshToken(OAuth2RefreshToken refreshToken) {
+        String accessToken = accessTokenByRefreshToken.get(refreshToken.getValue());
+        if (accessToken != null)
+            enqueue(removal(accessToken), 0); // 按顺序写入，等待下面的删除提交即可
+        // 其他实例签发、只在数据库中的access token
+        enqueue(new Write(WriteType.REMOVE_ACCESS_TOKEN_BY_REFRESH_TOKEN, refreshToken.getValue(), null, null, null, null), removalTimeoutMillis);
+    }
+
+    @Override
+    public OAuth2AccessToken getAccessToken(OAuth2Authentication authentication) {
+        String tokenValue = accessTokenByAuthentication.get(authenticationKeyGenerator.extractKey(authentication));
+        if (tokenValue == null)
+            return null; // 启动时已经恢复，内存中没有即为没有，签发时不再查询数据库
+        AccessEntry entry = accessTokens.get(tokenValue);
+        return entry != null ? entry.token : null;
+    }
+
+    @Override
+    public Collection<OAuth2AccessToken> findTokensByClientIdAndUserName(String clientId, String userName) {
+        Map<String, OAuth2AccessToken> tokens = new LinkedHashMap<>();
+        for (OAuth2AccessToken token : database.findTokensByClientIdAndUserName(clientId, userName))
+            tokens.put(token.getValue(), token);
+        for (AccessEntry entry : accessTokens.values()) {
+            if (clientId.equals(entry.authentication.getOAuth2Request().getClientId())
+                    && !entry.authentication.isClientOnly() && userName.equals(entry.authentication.getName()))
+                tokens.put(entry.token.getValue(), entry.token);
+        }
+        tokens.keySet().removeAll(pendingRemovals.keySet());
+        return new ArrayList<>(tokens.values());
+    }
+
+    @Override
+    public Collection<OAuth2AccessToken> findTokensByClientId(String clientId) {
+        Map<String, OAuth2AccessToken> tokens = new LinkedHashMap<>();
+        for (OAuth2AccessToken token : database.findTokensByClientId(clientId))
+            tokens.put(token.getValue(), token);
+        for (AccessEntry entry : accessTokens.values()) {
+            if (clientId.equals(entry.authentication.getOAuth2Request().getClientId()))
+                tokens.put(entry.token.getValue(), entry.token);
+        }
+        tokens.keySet().removeAll(pendingRemovals.keySet());
+        return new ArrayList<>(tokens.values());
+    }
+
+    private Object lock(String authenticationKey) {
+        return locks[(authenticationKey.hashCode() & Integer.MAX_VALUE) % STRIPES];
+    }
+
+    /**
+     * 从内存中删除access token及其索引，不写入数据库；调用方持有该token的认证对应的锁
+     */
+    private void forget(String tokenValue) {
+        AccessEntry entry = accessTokens.remove(tokenValue);
+        if (entry == null)
+            return;
+        accessTokenByAuthentication.remove(entry.authenticationKey, tokenValue);
+        if (entry.token.getRefreshToken() != null)
+            accessTokenByRefreshToken.remove(entry.token.getRefreshToken().getValue(), tokenValue);
+    }
+
+    private AccessEntry accessEntry(String tokenValue) {
+        AccessEntry entry = accessTokens.get(tokenValue);
+        if (entry != null || pendingRemovals.containsKey(tokenValue))
+            return entry;
+
+        OAuth2AccessToken token = database.readAccessToken(tokenValue);
+        OAuth2Authentication authentication = token != null ? database.readAuthentication(tokenValue) : null;
+        if (authentication == null)
+            return null;
+        String authenticationKey = authenticationKeyGenerator.extractKey(authentication);
+        synchronized (lock(authenticationKey)) {
+            if (pendingRemovals.containsKey(tokenValue))
+                return null; // 读取数据库期间被删除
+            entry = accessTokens.get(tokenValue);
+            if (entry != null)
+                return entry;
+            entry = new AccessEntry(token, authentication, authenticationKey);
+            accessTokens.put(tokenValue, entry);
+            accessTokenByAuthentication.putIfAbsent(authenticationKey, tokenValue);
+            if (token.getRefreshToken() != null)
+                accessTokenByRefreshToken.putIfAbsent(token.getRefreshToken().getValue(), tokenValue);
+            return entry;
+        }
+    }
+
+    private RefreshEntry refreshEntry(String tokenValue) {
+        RefreshEntry entry = refreshTokens.get(tokenValue);
+        if (entry != null || pendingRemovals.containsKey(tokenValue))
+            return entry;
+
+        OAuth2RefreshToken token = database.readRefreshToken(tokenValue);
+        OAuth2Authentication authentication = token != null ? database.readAuthenticationForRefreshToken(token) : null;
+        if (authentication == null)
+            return null;
+        entry = new RefreshEntry(token, authentication);
+        RefreshEntry existing = refreshTokens.putIfAbsent(tokenValue, entry);
+        if (pendingRemovals.containsKey(tokenValue)) {
+            refreshTokens.remove(tokenValue, entry);
+            return null;
+        }
+        return existing != null ? existing : entry;
+    }
+
+    /**
+     * 放入写入队列，timeoutMillis大于0时等待所在的批次提交
+     */
+    private void enqueue(Write write, long timeoutMillis) {
+        try {
+            queue.put(write);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransientDataAccessResourceException("等待token写入队列时被中断", e);
+        }
+        if (timeoutMillis <= 0)
+            return;
+
+        try {
+            write.done.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new TransientDataAccessResourceException("等待token写入数据库超时，稍后仍会重试写入", e);
+        } catch (ExecutionException e) {
+            throw new TransientDataAccessResourceException("token写入数据库失败", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransientDataAccessResourceException("等待token写入数据库时被中断", e);
+        }
+    }
+
+    /**
+     * 从数据库加载未过期的token，加载完成之前不接受请求
+     */
+    private void recover() {
+        long start = System.nanoTime();
+        Date now = new Date();
+        jdbcTemplate.query("select token, authentication from oauth_refresh_token", (RowCallbackHandler) rs -> {
+            try {
+                OAuth2RefreshToken token = SerializationUtils.deserialize(rs.getBytes(1));
+                if (!(token instanceof ExpiringOAuth2RefreshToken) || ((ExpiringOAuth2RefreshToken) token).getExpiration().after(now))
+                    refreshTokens.put(token.getValue(), new RefreshEntry(token, SerializationUtils.deserialize(rs.getBytes(2))));
+            } catch (IllegalArgumentException e) {
+                logger.warn("无法反序列化refresh token，跳过", e); // 与JdbcTokenStore一样忽略无法读取的记录
+            }
+        });
+        jdbcTemplate.query("select token, authentication from oauth_access_token", (RowCallbackHandler) rs -> {
+            try {
+                OAuth2AccessToken token = SerializationUtils.deserialize(rs.getBytes(1));
+                if (token.isExpired())
+                    return;
+                OAuth2Authentication authentication = SerializationUtils.deserialize(rs.getBytes(2));
+                String authenticationKey = authenticationKeyGenerator.extractKey(authentication);
+                accessTokens.put(token.getValue(), new AccessEntry(token, authentication, authenticationKey));
+                accessTokenByAuthentication.put(authenticationKey, token.getValue());
+                if (token.getRefreshToken() != null)
+                    accessTokenByRefreshToken.put(token.getRefreshToken().getValue(), token.getValue());
+            } catch (IllegalArgumentException e) {
+                logger.warn("无法反序列化access token，跳过", e);
+            }
+        });
+        logger.info("从数据库恢复token：access token {}个，refresh token {}个，耗时{}ms",
+                accessTokens.size(), refreshTokens.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * 写入线程：取出队列中已有的修改（最多batchSize个）作为一批，数据库写入期间到达的修改自然进入下一批
+     */
+    private void write() {
+        List<Write> batch = new ArrayList<>(batchSize);
+        long nextSweep = System.nanoTime() + SWEEP_INTERVAL_NANOS;
+        while (running || !queue.isEmpty()) {
+            try {
+                Write first = queue.poll(1, TimeUnit.SECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    flush(batch);
+                }
+                if (System.nanoTime() - nextSweep >= 0) {
+                    sweep();
+                    nextSweep = System.nanoTime() + SWEEP_INTERVAL_NANOS;
+                }
+            } catch (InterruptedException e) {
+                running = false; // 继续写完队列中剩余的修改
+                if (!batch.isEmpty())
+                    flushOnce(batch); // 重试等待中被中断的这一批再写入一次
+            } catch (RuntimeException e) {
+                logger.error("token写入线程异常，{}个修改没有写入数据库", batch.size(), e);
+                for (Write write : batch)
+                    write.done.completeExceptionally(e); // 已经完成的不受影响
+            } finally {
+                batch.clear(); // 无论成功与否，同一批修改只处理一次
+            }
+        }
+    }
+
+    /**
+     * 写入一批修改：暂时性的错误（连接、死锁、超时等）整批重试；其他错误（例如数据超长、无法序列化的认证信息）重试也不会成功，
+     * 把这一批对半拆开分别写入，直到找出写不进去的单个修改，丢弃并记录日志，其余修改照常写入
+     */
+    private void flush(List<Write> batch) throws InterruptedException {
+        while (true) {
+            long start = System.nanoTime();
+            try {
+                transactionTemplate.execute(status -> {
+                    new Batch(batch).execute();
+                    return null;
+                });
+                if (accountLatencyMetrics.isEnabled())
+                    batchTimer.record(start);
+                batches.increment();
+                writes.add(batch.size());
+                for (Write write : batch) {
+                    if (write.type == WriteType.REMOVE_ACCESS_TOKEN || write.type == WriteType.REMOVE_REFRESH_TOKEN)
+                        pendingRemovals.remove(write.tokenValue, write);
+                    write.done.complete(null);
+                }
+                return;
+            } catch (RuntimeException e) { // 不只是DataAccessException，例如SerializationUtils抛出的IllegalArgumentException
+                failures.increment();
+                if (!running) {
+                    logger.error("停止时写入token失败，{}个修改没有写入数据库", batch.size(), e);
+                    for (Write write : batch)
+                        write.done.completeExceptionally(e);
+                    return;
+                }
+                if (!retryable(e)) {
+                    split(batch, e);
+                    return;
+                }
+                logger.warn("批量写入token失败，{}ms后重试", retryIntervalMillis, e);
+                Thread.sleep(retryIntervalMillis);
+            }
+        }
+    }
+
+    /**
+     * 停止时写入一批修改，running为false时flush失败不再等待重试
+     */
+    private void flushOnce(List<Write> batch) {
+        try {
+            flush(batch);
+        } catch (InterruptedException e) {
+            for (Write write : batch)
+                write.done.completeExceptionally(e);
+        }
+    }
+
+    private void split(List<Write> batch, RuntimeException e) throws InterruptedException {
+        if (batch.size() > 1) {
+            int half = batch.size() / 2;
+            flush(new ArrayList<>(batch.subList(0, half))); // 按原来的顺序，先写入前一半
+            flush(new ArrayList<>(batch.subList(half, batch.size())));
+            return;
+        }
+        Write write = batch.get(0);
+        dropped.increment();
+        // 删除没有写入时保留在pendingRemovals中，本进程不会再从数据库读回这个token
+        logger.error("token修改无法写入数据库，已丢弃：{} token_id={}", write.type, accountTokenStore.tokenKey(write.tokenValue), e); // 不输出token本身
+        write.done.completeExceptionally(e);
+    }
+
+    /**
+     * 连接失败、死锁、锁等待超时等重试可能成功的错误
+     */
+    private static boolean retryable(RuntimeException e) {
+        return e instanceof TransientDataAccessException || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException // 数据库不可用，例如无法获取连接
+                || e instanceof TransactionException; // 无法开始或提交事务
+    }
+
+    /**
+     * 只从内存中删除过期的token，数据库中的记录由AccountTokenPurger清理
+     */
+    private void sweep() {
+        Date now = new Date();
+        for (AccessEntry entry : accessTokens.values()) {
+            if (entry.token.isExpired()) {
+                synchronized (lock(entry.authenticationKey)) {
+                    if (accessTokens.get(entry.token.getValue()) == entry)
+                        forget(entry.token.getValue());
+                }
+            }
+        }
+        refreshTokens.values().removeIf(entry -> entry.token instanceof ExpiringOAuth2RefreshToken
+                && ((ExpiringOAuth2RefreshToken) entry.token).getExpiration().before(now));
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.<Metric<?>>asList(
+                new Metric<Number>("token-store.write-behind.access-tokens", accessTokens.size()),
+                new Metric<Number>("token-store.write-behind.refresh-tokens", refreshTokens.size()),
+                new Metric<Number>("token-store.write-behind.queue", queue.size()),
+                new Metric<Number>("token-store.write-behind.batches", batches.sum()),
+                new Metric<Number>("token-store.write-behind.writes", writes.sum()),
+                new Metric<Number>("token-store.write-behind.failures", failures.sum()),
+                new Metric<Number>("token-store.write-behind.dropped", dropped.sum()));
+    }
+
+    /**
+     * 停止接受新的批次，写完队列中剩余的修改
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        writer.join(SHUTDOWN_TIMEOUT_MILLIS);
+        if (!queue.isEmpty())
+            logger.error("停止超时，{}个token修改没有写入数据库", queue.size());
+    }
+
+    /**
+     * 一批修改按token合并为最终状态后写入：先删除，再插入
+     */
+    private final class Batch {
+
+        private final Map<String, Write> accessTokens = new LinkedHashMap<>();
+        private final Map<String, Write> refreshTokens = new LinkedHashMap<>();
+        private final List<Object[]> accessTokensByRefreshToken = new ArrayList<>();
+
+        Batch(List<Write> batch) {
+            for (Write write : batch) {
+                switch (write.type) {
+                    case STORE_ACCESS_TOKEN:
+                    case REMOVE_ACCESS_TOKEN:
+                        accessTokens.put(write.tokenValue, write);
+                        break;
+                    case REMOVE_ACCESS_TOKEN_BY_REFRESH_TOKEN:
+                        accessTokensByRefreshToken.add(new Object[]{accountTokenStore.tokenKey(write.tokenValue)});
+                        break;
+                    default:
+                        refreshTokens.put(write.tokenValue, write);
+                }
+            }
+        }
+
+        void execute() {
+            List<Object[]> accessTokenIds = new ArrayList<>(accessTokens.size());
+            Map<String, Write> storedByAuthentication = new LinkedHashMap<>(); // 同一个认证只插入最后一个
+            for (Write write : accessTokens.values()) {
+                accessTokenIds.add(new Object[]{accountTokenStore.tokenKey(write.tokenValue)});
+                if (write.type == WriteType.STORE_ACCESS_TOKEN)
+                    storedByAuthentication.put(write.authenticationKey, write);
+            }
+            List<Object[]> authenticationIds = new ArrayList<>(storedByAuthentication.size());
+            List<Object[]> accessTokenRows = new ArrayList<>(storedByAuthentication.size());
+            for (Write write : storedByAuthentication.values()) {
+                authenticationIds.add(new Object[]{write.authenticationKey});
+                OAuth2RefreshToken refreshToken = write.accessToken.getRefreshToken();
+                accessTokenRows.add(new Object[]{
+                        accountTokenStore.tokenKey(write.tokenValue),
+                        SerializationUtils.serialize(write.accessToken),
+                        write.authenticationKey,
+                        write.authentication.isClientOnly() ? null : write.authentication.getName(),
+                        write.authentication.getOAuth2Request().getClientId(),
+                        SerializationUtils.serialize(write.authentication),
+                        refreshToken != null ? accountTokenStore.tokenKey(refreshToken.getValue()) : null});
+            }
+
+            List<Object[]> refreshTokenIds = new ArrayList<>(refreshTokens.size());
+            List<Object[]> refreshTokenRows = new ArrayList<>(refreshTokens.size());
+            for (Write write : refreshTokens.values()) {
+                String tokenId = accountTokenStore.tokenKey(write.tokenValue);
+                refreshTokenIds.add(new Object[]{tokenId});
+                if (write.type == WriteType.STORE_REFRESH_TOKEN)
+                    refreshTokenRows.add(new Object[]{tokenId, SerializationUtils.serialize(write.refreshToken), SerializationUtils.serialize(write.authentication)});
+            }
+
+            batchUpdate("delete from oauth_access_token where token_id = ?", accessTokenIds, null);
+            batchUpdate("delete from oauth_access_token where authentication_id = ?", authenticationIds, null);
+            batchUpdate("delete from oauth_access_token where refresh_token = ?", accessTokensByRefreshToken, null);
+            batchUpdate("delete from oauth_refresh_token where token_id = ?", refreshTokenIds, null);
+            batchUpdate("insert into oauth_access_token (token_id, token, authentication_id, user_name, client_id, authentication, refresh_token) values (?, ?, ?, ?, ?, ?, ?)",
+                    accessTokenRows, ACCESS_TOKEN_TYPES);
+            batchUpdate("insert into oauth_refresh_token (token_id, token, authentication) values (?, ?, ?)", refreshTokenRows, REFRESH_TOKEN_TYPES);
+        }
+
+        private void batchUpdate(String sql, List<Object[]> rows, int[] types) {
+            if (rows.isEmpty())
+                return;
+            if (types != null)
+                jdbcTemplate.batchUpdate(sql, rows, types);
+            else
+                jdbcTemplate.batchUpdate(sql, rows);
+        }
+
+    }
+
+    private enum WriteType {
+        STORE_ACCESS_TOKEN, REMOVE_ACCESS_TOKEN, REMOVE_ACCESS_TOKEN_BY_REFRESH_TOKEN, STORE_REFRESH_TOKEN, REMOVE_REFRESH_TOKEN
+    }
+
+    private static final class Write {
+
+        final WriteType type;
+        final String tokenValue;
+        final OAuth2AccessToken accessToken;
+        final OAuth2RefreshToken refreshToken;
+        final OAuth2Authentication authentication;
+        final String authenticationKey;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Write(WriteType type, String tokenValue, OAuth2AccessToken accessToken, OAuth2RefreshToken refreshToken,
+              OAuth2Authentication authentication, String authenticationKey) {
+            this.type = type;
+            this.tokenValue = tokenValue;
+            this.accessToken = accessToken;
+            this.refreshToken = refreshToken;
+            this.authentication = authentication;
+            this.authenticationKey = authenticationKey;
+        }
+
+    }
+
+    private static final class AccessEntry {
+
+        final OAuth2AccessToken token;
+        final OAuth2Authentication authentication;
+        final String authenticationKey;
+
+        AccessEntry(OAuth2AccessToken token, OAuth2Authentication authentication, String authenticationKey) {
+            this.token = token;
+            this.authentication = authentication;
+            this.authenticationKey = authenticationKey;
+        }
+
+    }
+
+    private static final class RefreshEntry {
+
+        final OAuth2RefreshToken token;
+        final OAuth2Authentication authentication;
+
+        RefreshEntry(OAuth2RefreshToken token, OAuth2Authentication authentication) {
+            this.token = token;
+            this.authentication = authentication;
+        }
+
+    }
+
+}
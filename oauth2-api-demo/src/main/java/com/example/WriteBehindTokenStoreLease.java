@@ -0,0 +1,82 @@
+package com.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * write-behind方式只能单实例运行：token以内存为准，其他实例的删除（注销、刷新）本实例看不到，已删除的token在本实例上仍然有效。
+ * 启动时占用t_token_store_lease中唯一的一行，运行期间每隔renewMillis把beat加1；该行被其他实例占用时等待3个renewMillis，
+ * beat没有变化说明该实例已经停止（例如崩溃），接管后继续启动，否则启动失败。正常关闭时释放，重启不需要等待。
+ * 只比较beat是否变化，不依赖各个服务器的时钟
+ */
+public class WriteBehindTokenStoreLease implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindTokenStoreLease.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String owner = UUID.randomUUID().toString();
+    private final long takeoverMillis;
+
+    public WriteBehindTokenStoreLease(DataSource dataSource, long renewMillis) throws InterruptedException {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.takeoverMillis = renewMillis * 3;
+        jdbcTemplate.execute("create table if not exists t_token_store_lease (id int not null primary key, owner varchar(36), beat bigint not null)");
+        acquire();
+    }
+
+    private void acquire() throws InterruptedException {
+        while (true) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList("select owner, beat from t_token_store_lease where id = 1");
+            if (rows.isEmpty()) {
+                try {
+                    jdbcTemplate.update("insert into t_token_store_lease (id, owner, beat) values (1, ?, 0)", owner);
+                    return;
+                } catch (DuplicateKeyException e) {
+                    continue; // 另一个实例同时启动，重新检查
+                }
+            }
+
+            Object holder = rows.get(0).get("owner");
+            long beat = ((Number) rows.get(0).get("beat")).longValue();
+            if (holder == null) { // 上一个实例已正常关闭
+                if (jdbcTemplate.update("update t_token_store_lease set owner = ?, beat = beat + 1 where id = 1 and owner is null", owner) == 1)
+                    return;
+                continue;
+            }
+
+            logger.info("write-behind租约由实例{}占用，等待{}ms确认其是否仍在运行", holder, takeoverMillis);
+            Thread.sleep(takeoverMillis);
+            if (jdbcTemplate.update("update t_token_store_lease set owner = ?, beat = beat + 1 where id = 1 and beat = ?", owner, beat) == 1) {
+                logger.warn("实例{}的write-behind租约已超时，由本实例接管", holder);
+                return;
+            }
+            throw new IllegalStateException("account.token-store.type=write-behind只能单实例运行，另一个实例正在使用同一个数据库");
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${account.token-store.write-behind.lease-renew-ms:5000}")
+    public void renew() {
+        try {
+            if (jdbcTemplate.update("update t_token_store_lease set beat = beat + 1 where id = 1 and owner = ?", owner) == 0)
+                logger.error("write-behind租约已被其他实例接管，两个实例同时运行时一个实例的注销在另一个实例上不生效");
+        } catch (DataAccessException e) {
+            logger.warn("续约write-behind租约失败", e); // 超过3次续约的时间后其他实例可以接管
+        }
+    }
+
+    @Override
+    public void destroy() {
+        jdbcTemplate.update("update t_token_store_lease set owner = null where id = 1 and owner = ?", owner);
+    }
+
+}
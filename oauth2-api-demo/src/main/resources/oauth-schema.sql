@@ -0,0 +1,20 @@
+create table if not exists oauth_access_token (
+    token_id varchar(256),
+    token longvarbinary,
+    authentication_id varchar(256) primary key,
+    user_name varchar(256),
+    client_id varchar(256),
+    authentication longvarbinary,
+    refresh_token varchar(256),
+    create_time timestamp default current_timestamp
+);
+create index if not exists idx_oauth_access_token_create_time on oauth_access_token (create_time);
+
+create table if not exists oauth_refresh_token (
+    token_id varchar(256),
+    token longvarbinary,
+    authentication longvarbinary,
+    create_time timestamp default current_timestamp
+);
+create index if not exists idx_oauth_refresh_token_token_id on oauth_refresh_token (token_id);
+create index if not exists idx_oauth_refresh_token_create_time on oauth_refresh_token (create_time);
@@ -0,0 +1,164 @@
+package com.example;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.common.DefaultOAuth2RefreshToken;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.OAuth2Request;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 用两个内存数据库分别作为主库和从库，replicate()把主库的全部数据复制到从库，模拟一次复制；
+ * 没有复制的数据只在主库中，据此判断读取访问的是哪个库
+ */
+@RunWith(SpringRunner.class)
+@ActiveProfiles("loadtest")
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+		"account.datasource.replica.urls=" + AccountDataSourceRoutingTests.REPLICA_URL,
+		"account.datasource.replica.max-lag-ms=" + AccountDataSourceRoutingTests.MAX_LAG_MS,
+		"account.datasource.replica.check-interval-ms=3600000",
+		"account.datasource.replica.sticky-ms=" + AccountDataSourceRoutingTests.STICKY_MS,
+		"spring.jpa.properties.hibernate.cache.use_second_level_cache=false"})
+public class AccountDataSourceRoutingTests {
+
+	static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+	static final long MAX_LAG_MS = 300;
+	static final long STICKY_MS = 300;
+
+	@Autowired
+	private AccountRepository accountRepository;
+
+	@Autowired
+	private AccountDataSourceRouting accountDataSourceRouting;
+
+	@Autowired
+	private ReplicaDataSources replicaDataSources;
+
+	@Autowired
+	private AccountTokenStore accountTokenStore;
+
+	private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+	@Before
+	public void setUp() throws Exception {
+		replicaDataSources.check(); // 先在主库写入心跳，再复制到从库
+		replicate();
+		replicaDataSources.check();
+	}
+
+	@Test
+	public void readOnlyTransactionsGoToReplica() throws Exception {
+		save("zhangsan");
+		assertNull(accountRepository.findByUsername("zhangsan")); // 只读事务，从库中还没有
+		assertNull(read("zhangsan"));
+		assertNotNull(accountDataSourceRouting.primary(() -> accountRepository.findByUsername("zhangsan")));
+
+		replicate();
+		assertNotNull(read("zhangsan"));
+	}
+
+	@Test
+	public void readsAfterWriteStickToPrimary() throws Exception {
+		save("lisi");
+		accountDataSourceRouting.written("lisi");
+		assertNotNull(read("lisi"));
+
+		Thread.sleep(STICKY_MS + 100);
+		assertNull(read("lisi"));
+	}
+
+	@Test
+	public void laggingReplicaIsSkipped() throws Exception {
+		save("wangwu");
+		assertNull(read("wangwu"));
+
+		Thread.sleep(MAX_LAG_MS + 100); // 期间没有复制，从库的心跳落后于主库
+		replicaDataSources.check();
+		assertNotNull(read("wangwu"));
+
+		replicate();
+		replicaDataSources.check();
+		assertNotNull(read("wangwu"));
+	}
+
+	@Test
+	public void replicaOneBeatBehindIsHealthy() throws Exception {
+		Thread.sleep(MAX_LAG_MS + 100); // 上一次心跳已经比允许的延迟更早
+		replicate();
+		save("qianba");
+		replicaDataSources.check(); // 从库还没有复制刚写入的心跳，读到的是上一次的
+		assertNull(read("qianba"));
+	}
+
+	@Test
+	public void unavailableReplicaIsSkipped() throws Exception {
+		save("zhaoliu");
+		assertNull(read("zhaoliu"));
+
+		replica.execute("drop all objects");
+		replicaDataSources.check();
+		assertNotNull(read("zhaoliu"));
+	}
+
+	@Test
+	public void removedTokensStickToPrimary() throws Exception {
+		DefaultOAuth2AccessToken token = new DefaultOAuth2AccessToken(UUID.randomUUID().toString());
+		token.setRefreshToken(new DefaultOAuth2RefreshToken(UUID.randomUUID().toString()));
+		OAuth2Request request = new OAuth2Request(Collections.emptyMap(), "ios-client",
+				AuthorityUtils.createAuthorityList("IOS_USER"), true, Collections.singleton("read"),
+				Collections.singleton("api-accounts"), null, null, null);
+		accountTokenStore.storeAccessToken(token, new OAuth2Authentication(request,
+				new UsernamePasswordAuthenticationToken("sunqi", null, AuthorityUtils.createAuthorityList("ROLE_USER"))));
+
+		Thread.sleep(STICKY_MS + 100);
+		setUp();
+		assertNotNull(accountTokenStore.readAccessToken(token.getValue()));
+
+		accountTokenStore.removeAccessTokenUsingRefreshToken(token.getRefreshToken()); // 刷新token时删除旧的access token，从库中还有
+		assertNull(accountTokenStore.readAccessToken(token.getValue()));
+
+		Thread.sleep(STICKY_MS + 100);
+		assertNotNull(accountTokenStore.readAccessToken(token.getValue()));
+	}
+
+	private Account read(String username) {
+		return accountDataSourceRouting.read(username, () -> accountRepository.findByUsername(username));
+	}
+
+	private void save(String username) {
+		Account account = new Account();
+		account.setUsername(username);
+		accountRepository.save(account);
+	}
+
+	/**
+	 * 用主库的脚本重建从库
+	 */
+	private void replicate() throws Exception {
+		File script = File.createTempFile("routing-replica", ".sql");
+		try {
+			new JdbcTemplate(replicaDataSources.primary()).execute("script drop to '" + script.getAbsolutePath() + "'");
+			replica.execute("runscript from '" + script.getAbsolutePath() + "'");
+		} finally {
+			script.delete();
+		}
+	}
+
+}
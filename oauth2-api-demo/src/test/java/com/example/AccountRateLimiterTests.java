@@ -0,0 +1,36 @@
+package com.example;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AccountRateLimiterTests {
+
+	@Test
+	public void burstIsAllowedThenRejectedPerKey() {
+		AccountRateLimiter.Limit limit = new AccountRateLimiter.Limit("user", 1, 3, 10);
+		for (int i = 0; i < 3; i++)
+			assertEquals(0, limit.acquire("zhangsan"));
+		assertTrue(limit.acquire("zhangsan") > 0);
+		assertEquals(0, limit.acquire("lisi"));
+		assertEquals(0, limit.acquire(null));
+	}
+
+	@Test
+	public void newKeysShareOverflowBucketWhenFull() {
+		AccountRateLimiter.Limit limit = new AccountRateLimiter.Limit("ip", 1, 1, 2);
+		assertEquals(0, limit.acquire("10.0.0.1"));
+		assertEquals(0, limit.acquire("10.0.0.2"));
+		assertEquals(0, limit.acquire("10.0.0.3")); // 已有的桶都没有回满，使用溢出桶
+		assertTrue(limit.acquire("10.0.0.4") > 0);
+	}
+
+	@Test
+	public void zeroRateDisablesLimit() {
+		AccountRateLimiter.Limit limit = new AccountRateLimiter.Limit("client", 0, 1, 10);
+		for (int i = 0; i < 100; i++)
+			assertEquals(0, limit.acquire("ios-client"));
+	}
+
+}
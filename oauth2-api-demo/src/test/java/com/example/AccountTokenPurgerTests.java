@@ -0,0 +1,67 @@
+package com.example;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.sql.DataSource;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * clients.json中的ios-client未指定refresh token有效期，access token有效期为1天、refresh token为30天。
+ * create_time与清理的截止时间都由数据库的时钟计算
+ */
+@RunWith(SpringRunner.class)
+@ActiveProfiles("loadtest")
+@SpringBootTest(properties = {
+		"account.token-purge.batch-size=2",
+		"account.token-purge.pause-ms=0"})
+public class AccountTokenPurgerTests {
+
+	@Autowired
+	private AccountTokenPurger accountTokenPurger;
+
+	@Autowired
+	private DataSource dataSource;
+
+	private JdbcTemplate jdbcTemplate;
+
+	@Before
+	public void setUp() {
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.update("delete from oauth_access_token");
+		jdbcTemplate.update("delete from oauth_refresh_token");
+	}
+
+	@Test
+	public void expiredTokensArePurgedInBatches() {
+		for (int i = 0; i < 5; i++)
+			accessToken("expired-" + i, 2);
+		accessToken("valid", 0);
+		for (int i = 0; i < 3; i++)
+			refreshToken("expired-" + i, 31);
+		refreshToken("valid", 2);
+
+		accountTokenPurger.purge();
+
+		assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject("select count(*) from oauth_access_token", Integer.class));
+		assertEquals("valid", jdbcTemplate.queryForObject("select authentication_id from oauth_access_token", String.class));
+		assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject("select count(*) from oauth_refresh_token", Integer.class));
+		assertEquals("valid", jdbcTemplate.queryForObject("select token_id from oauth_refresh_token", String.class));
+	}
+
+	private void accessToken(String key, int daysAgo) {
+		jdbcTemplate.update("insert into oauth_access_token (token_id, authentication_id, create_time) values (?, ?, dateadd('DAY', ?, current_timestamp))", key, key, -daysAgo);
+	}
+
+	private void refreshToken(String key, int daysAgo) {
+		jdbcTemplate.update("insert into oauth_refresh_token (token_id, create_time) values (?, dateadd('DAY', ?, current_timestamp))", key, -daysAgo);
+	}
+
+}
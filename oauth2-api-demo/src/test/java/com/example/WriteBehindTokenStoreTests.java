@@ -0,0 +1,192 @@
+package com.example;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.common.DefaultOAuth2RefreshToken;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.OAuth2Request;
+import org.springframework.security.oauth2.provider.token.TokenStore;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 用AccountTokenStore（JdbcTokenStore）直接读取数据库，检查异步写入的结果
+ */
+@RunWith(SpringRunner.class)
+@ActiveProfiles("loadtest")
+@SpringBootTest(properties = {"account.token-store.type=write-behind", "account.token-store.write-behind.lease-renew-ms=100"})
+public class WriteBehindTokenStoreTests {
+
+	@Autowired
+	private TokenStore tokenStore;
+
+	@Autowired
+	private AccountTokenStore accountTokenStore;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private AccountLatencyMetrics accountLatencyMetrics;
+
+	@Test
+	public void storedTokensAreReadableImmediatelyAndPersistedAsynchronously() throws Exception {
+		OAuth2Authentication authentication = authentication("zhangsan");
+		OAuth2AccessToken token = accessToken();
+		tokenStore.storeRefreshToken(token.getRefreshToken(), authentication);
+		tokenStore.storeAccessToken(token, authentication);
+
+		assertSame(token, tokenStore.readAccessToken(token.getValue()));
+		assertSame(token, tokenStore.getAccessToken(authentication));
+		assertEquals("zhangsan", tokenStore.readAuthentication(token.getValue()).getName());
+
+		await(() -> accountTokenStore.readAccessToken(token.getValue()) != null
+				&& accountTokenStore.readRefreshToken(token.getRefreshToken().getValue()) != null);
+		assertEquals("zhangsan", accountTokenStore.readAuthentication(token.getValue()).getName());
+	}
+
+	@Test
+	public void removedTokensAreNotReadBackFromDatabase() throws Exception {
+		OAuth2Authentication authentication = authentication("lisi");
+		OAuth2AccessToken token = accessToken();
+		tokenStore.storeAccessToken(token, authentication);
+		await(() -> accountTokenStore.readAccessToken(token.getValue()) != null);
+
+		tokenStore.removeAccessToken(token); // sync-timeout-ms为0时删除也等待提交
+		assertNull(tokenStore.readAccessToken(token.getValue()));
+		assertNull(tokenStore.getAccessToken(authentication));
+		assertNull(accountTokenStore.readAccessToken(token.getValue()));
+	}
+
+	@Test
+	public void newTokenReplacesPreviousTokenOfSameAuthentication() throws Exception {
+		OAuth2Authentication authentication = authentication("wangwu");
+		OAuth2AccessToken first = accessToken();
+		OAuth2AccessToken second = accessToken();
+		tokenStore.storeAccessToken(first, authentication);
+		tokenStore.storeAccessToken(second, authentication);
+
+		assertNull(tokenStore.readAccessToken(first.getValue()));
+		assertSame(second, tokenStore.getAccessToken(authentication));
+		await(() -> accountTokenStore.readAccessToken(second.getValue()) != null);
+		assertNull(accountTokenStore.readAccessToken(first.getValue()));
+	}
+
+	@Test
+	public void writesThatCannotSucceedAreDroppedWithoutBlockingOthers() throws Exception {
+		WriteBehindTokenStore store = new WriteBehindTokenStore(accountTokenStore, accountTokenStore, dataSource,
+				accountLatencyMetrics, 100, 10, 0, 100);
+		try {
+			StringBuilder username = new StringBuilder();
+			for (int i = 0; i < 300; i++)
+				username.append('x'); // 超过user_name列的长度
+			OAuth2AccessToken invalid = accessToken();
+			OAuth2AccessToken valid = accessToken();
+			store.storeAccessToken(invalid, authentication(username.toString()));
+			store.storeAccessToken(valid, authentication("sunqi"));
+
+			await(() -> accountTokenStore.readAccessToken(valid.getValue()) != null);
+			assertNull(accountTokenStore.readAccessToken(invalid.getValue()));
+			assertEquals(1L, metric(store, "token-store.write-behind.dropped"));
+		} finally {
+			store.destroy();
+		}
+	}
+
+	@Test
+	public void writesThatCannotBeSerializedAreDroppedWithoutBlockingOthers() throws Exception {
+		WriteBehindTokenStore store = new WriteBehindTokenStore(accountTokenStore, accountTokenStore, dataSource,
+				accountLatencyMetrics, 100, 10, 0, 100);
+		try {
+			OAuth2Authentication unserializable = authentication("zhouba");
+			unserializable.setDetails(new Object()); // 写入时SerializationUtils抛出IllegalArgumentException
+			OAuth2AccessToken invalid = accessToken();
+			OAuth2AccessToken valid = accessToken();
+			store.storeAccessToken(invalid, unserializable);
+			store.storeAccessToken(valid, authentication("wujiu"));
+
+			await(() -> accountTokenStore.readAccessToken(valid.getValue()) != null);
+			assertNull(accountTokenStore.readAccessToken(invalid.getValue()));
+			assertEquals(1L, metric(store, "token-store.write-behind.dropped"));
+		} finally {
+			store.destroy();
+		}
+	}
+
+	@Test
+	public void tokensAreRecoveredFromDatabase() throws Exception {
+		OAuth2Authentication authentication = authentication("zhaoliu");
+		OAuth2AccessToken token = accessToken();
+		tokenStore.storeAccessToken(token, authentication);
+		await(() -> accountTokenStore.readAccessToken(token.getValue()) != null);
+
+		WriteBehindTokenStore restarted = new WriteBehindTokenStore(accountTokenStore, accountTokenStore, dataSource,
+				accountLatencyMetrics, 100, 10, 0, 100);
+		try {
+			OAuth2AccessToken recovered = restarted.getAccessToken(authentication); // 不读取数据库，只能来自启动时的恢复
+			assertNotNull(recovered);
+			assertEquals(token.getValue(), recovered.getValue());
+		} finally {
+			restarted.destroy();
+		}
+	}
+
+	@Test
+	public void secondInstanceCannotStartWhileLeaseIsHeld() throws Exception {
+		try {
+			new WriteBehindTokenStoreLease(dataSource, 100); // 应用中的实例一直在续约
+			fail("另一个实例正在使用时不能取得租约");
+		} catch (IllegalStateException expected) {
+		}
+	}
+
+	private static OAuth2Authentication authentication(String username) {
+		OAuth2Request request = new OAuth2Request(Collections.emptyMap(), "ios-client",
+				AuthorityUtils.createAuthorityList("IOS_USER"), true, Collections.singleton("read"),
+				Collections.singleton("api-accounts"), null, null, null);
+		UsernamePasswordAuthenticationToken user = new UsernamePasswordAuthenticationToken(username, null,
+				AuthorityUtils.createAuthorityList("ROLE_USER"));
+		return new OAuth2Authentication(request, user);
+	}
+
+	private static OAuth2AccessToken accessToken() {
+		DefaultOAuth2AccessToken token = new DefaultOAuth2AccessToken(UUID.randomUUID().toString());
+		token.setExpiration(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)));
+		token.setRefreshToken(new DefaultOAuth2RefreshToken(UUID.randomUUID().toString()));
+		return token;
+	}
+
+	private static long metric(WriteBehindTokenStore store, String name) {
+		return store.metrics().stream().filter(metric -> metric.getName().equals(name))
+				.findFirst().get().getValue().longValue();
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!condition.getAsBoolean()) {
+			assertTrue("5秒内没有写入数据库", System.currentTimeMillis() < deadline);
+			Thread.sleep(20);
+		}
+	}
+
+}
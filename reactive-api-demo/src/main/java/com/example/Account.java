@@ -0,0 +1,121 @@
+package com.example;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * 账户，由R2DBC映射到本模块内嵌数据库中的t_account表（见schema.sql），字段名按驼峰转下划线对应列名。
+ * 列与其它模块的t_account相同，但id由自增列生成，而其它模块的id由t_account_seq分配，不能与其它模块共用同一个数据库
+ */
+@Table("t_account")
+public class Account { // 1
+
+    @Id
+    private Long id; // 2 为null时insert，由schema.sql中的自增列生成
+
+    private String username; // 3 唯一约束见schema.sql
+
+    @JsonIgnore
+    private String password;
+
+    private String email;
+    private String firstName;
+    private String lastName;
+    private Integer age;
+    private Byte gender;
+
+    @Version
+    @JsonIgnore
+    private Long version; // 乐观锁版本号，update时带上where version = ?
+
+    public Account() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public void setFirstName(String firstName) {
+        this.firstName = firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public void setLastName(String lastName) {
+        this.lastName = lastName;
+    }
+
+    public Integer getAge() {
+        return age;
+    }
+
+    public void setAge(Integer age) {
+        this.age = age;
+    }
+
+    public Byte getGender() {
+        return gender;
+    }
+
+    public void setGender(Byte gender) {
+        this.gender = gender;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    @Override
+    public String toString() {
+        return "Account{" +
+                "id=" + id +
+                ", username='" + username + '\'' +
+                ", email='" + email + '\'' +
+                ", firstName='" + firstName + '\'' +
+                ", lastName='" + lastName + '\'' +
+                ", age=" + age +
+                ", gender=" + gender +
+                ", version=" + version +
+                '}';
+    }
+}
@@ -0,0 +1,80 @@
+package com.example;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.security.Principal;
+
+/**
+ * 与其它模块相同的/api/accounts接口，所有方法返回Mono/Flux，
+ * 等待数据库期间不占用线程，少量event loop线程即可处理全部连接
+ */
+@RestController
+@RequestMapping("/api/accounts")
+public class AccountController { // 1
+
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    @Autowired
+    private AccountRepository accountRepository; // 2
+
+    @RequestMapping(method = RequestMethod.GET, value = "/me")
+    public Mono<Account> me(Mono<Principal> principal) { // 3
+        return principal
+                .flatMap(me -> accountRepository.findByUsername(me.getName()))
+                .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("用户不存在！")));
+    }
+
+    @RequestMapping(method = RequestMethod.POST, value = "/add")
+    public Mono<Account> add(@RequestBody Account account) { // 4
+        account.setId(null); // 5
+        return accountRepository.save(account); // 6 username有唯一约束，用户已存在时insert失败，由AccountRestControllerAdvice返回409
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "/{username}")
+    public Mono<Account> account(@PathVariable String username) { // 7
+        return findExisting(username);
+    }
+
+    @RequestMapping(method = RequestMethod.PUT, value = "/update")
+    public Mono<Account> update(@RequestBody Account account) { // 8
+        return findExisting(account.getUsername()).flatMap(me -> {
+            me.setPassword(account.getPassword());
+            me.setEmail(account.getEmail());
+            me.setFirstName(account.getFirstName());
+            me.setLastName(account.getLastName());
+            me.setAge(account.getAge());
+            me.setGender(account.getGender());
+
+            return accountRepository.save(me); // 9 版本号已被其他请求修改时抛出OptimisticLockingFailureException
+        });
+    }
+
+    @RequestMapping(method = RequestMethod.DELETE, value = "/{username}")
+    public Mono<Account> delete(@PathVariable String username) { // 10
+        return findExisting(username).flatMap(account -> accountRepository.delete(account).thenReturn(account));
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "/", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<Account> list(@RequestParam(defaultValue = "0") long after,
+                              @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size,
+                              ServerHttpRequest request) { // 11
+        if (request.getHeaders().getAccept().contains(MediaType.APPLICATION_NDJSON)) {
+            return accountRepository.findAllAfter(after); // 12 每行一个json，逐行写出，客户端读得慢时暂停从数据库读取
+        }
+
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        return accountRepository.findPage(after, pageSize); // 13 下一页从最后一个id开始
+    }
+
+    private Mono<Account> findExisting(String username) {
+        return accountRepository.findByUsername(username)
+                .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("用户不存在！")));
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.example;
+
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * 非阻塞的账户仓库，查询结果按订阅方的需求逐行读取
+ */
+public interface AccountRepository extends ReactiveCrudRepository<Account, Long> { // 1
+
+    Mono<Account> findByUsername(String username); // 2
+
+    @Query("select * from t_account where id > :after order by id limit :size")
+    Flux<Account> findPage(long after, int size); // 3 按id游标分页，与hateoas-api-demo的列表一致
+
+    @Query("select * from t_account where id > :after order by id")
+    Flux<Account> findAllAfter(long after); // 4 流式导出，不限制行数
+
+}
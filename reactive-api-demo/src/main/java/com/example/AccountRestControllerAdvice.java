@@ -0,0 +1,50 @@
+package com.example;
+
+import io.r2dbc.spi.R2dbcException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * 异常与HTTP状态的对应关系与rest-api-demo一致
+ */
+@RestControllerAdvice
+public class AccountRestControllerAdvice { // 1
+
+    private static final String SQL_STATE_UNIQUE_VIOLATION = "23505"; // H2、PostgreSQL
+
+    @ExceptionHandler({IllegalArgumentException.class})
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    IllegalArgumentException illegalArgumentExceptionHandler(Exception e) { // 2
+        return new IllegalArgumentException(e.getMessage());
+    }
+
+    @ExceptionHandler({DataIntegrityViolationException.class})
+    ResponseEntity<IllegalArgumentException> dataIntegrityViolationExceptionHandler(DataIntegrityViolationException e) { // 违反唯一约束（用户名已被占用）返回409，其它约束返回400
+        if (isDuplicateKey(e))
+            return new ResponseEntity<>(new IllegalArgumentException("用户已经存在！"), HttpStatus.CONFLICT);
+        return new ResponseEntity<>(new IllegalArgumentException("数据不合法！"), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler({OptimisticLockingFailureException.class})
+    @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+    IllegalArgumentException optimisticLockingFailureExceptionHandler(OptimisticLockingFailureException e) { // 保存时发现版本已被其他请求修改
+        return new IllegalArgumentException("用户已被修改！");
+    }
+
+    private static boolean isDuplicateKey(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof DuplicateKeyException)
+                return true;
+            if (t instanceof R2dbcException && SQL_STATE_UNIQUE_VIOLATION.equals(((R2dbcException) t).getSqlState()))
+                return true;
+        }
+        return false;
+    }
+
+}
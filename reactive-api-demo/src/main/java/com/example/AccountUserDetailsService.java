@@ -0,0 +1,34 @@
+package com.example;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+/**
+ * 与security-api-demo的AccountUserDetailsService规则相同，用户从数据库非阻塞读取
+ */
+@Service
+public class AccountUserDetailsService implements ReactiveUserDetailsService {
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Override
+    public Mono<UserDetails> findByUsername(String username) {
+
+        if(username.equals("admin")){
+            return Mono.just(user(username, username, "ADMIN", "USER"));
+        }
+
+        return accountRepository.findByUsername(username) // 用户不存在时为空，认证失败返回401
+                .map(account -> user(username, account.getPassword() != null ? account.getPassword() : username, "USER"));
+    }
+
+    private static UserDetails user(String username, String password, String... authorities) {
+        return User.withUsername(username).password("{noop}" + password).authorities(authorities).build(); // 密码与其它模块一样以明文保存
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.example;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+
+/**
+ * 访问规则与security-api-demo相同，每个请求都带Basic认证，不创建session
+ */
+@Configuration
+@EnableWebFluxSecurity
+public class WebSecurityConfig { // 1
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) { // 2
+        return http
+                .httpBasic().and().csrf().disable() // 3
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                .authorizeExchange()
+                .pathMatchers("/api/accounts/add").permitAll() // 4
+                .pathMatchers("/api/accounts/me").hasAuthority("USER") // 5
+                .pathMatchers("/api/accounts/", "/api/accounts/{username}", "/api/accounts/update").hasAuthority("ADMIN") // 6
+                .pathMatchers("/manage/**").hasAuthority("ADMIN")
+                .anyExchange().permitAll()
+                .and()
+                .build();
+    }
+
+}
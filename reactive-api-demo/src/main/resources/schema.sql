@@ -0,0 +1,12 @@
+-- 只用于本模块的内嵌数据库：id为自增列，其它模块的t_account没有自增默认值、id由t_account_seq分配，两种id来源不能混用
+create table if not exists t_account (
+    id bigint auto_increment primary key,
+    username varchar(20) not null unique,
+    password varchar(255),
+    email varchar(255),
+    first_name varchar(255),
+    last_name varchar(255),
+    age int,
+    gender tinyint,
+    version bigint not null default 0
+);
@@ -0,0 +1,53 @@
+package com.example;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.NaturalIdCacheStatistics;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 将Account二级缓存的命中/未命中次数发布到/manage/metrics
+ */
+@Component
+public class AccountCacheMetrics implements PublicMetrics {
+
+    private final Statistics statistics;
+
+    @Autowired
+    public AccountCacheMetrics(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+
+        SecondLevelCacheStatistics account = statistics.getSecondLevelCacheStatistics("account");
+        if (account != null) {
+            metrics.add(new Metric<>("cache.account.hit", account.getHitCount()));
+            metrics.add(new Metric<>("cache.account.miss", account.getMissCount()));
+            metrics.add(new Metric<>("cache.account.put", account.getPutCount()));
+            metrics.add(new Metric<>("cache.account.size", account.getElementCountInMemory()));
+        }
+
+        NaturalIdCacheStatistics naturalId = statistics.getNaturalIdCacheStatistics("account-natural-id");
+        if (naturalId != null) {
+            metrics.add(new Metric<>("cache.account-natural-id.hit", naturalId.getHitCount()));
+            metrics.add(new Metric<>("cache.account-natural-id.miss", naturalId.getMissCount()));
+            metrics.add(new Metric<>("cache.account-natural-id.put", naturalId.getPutCount()));
+            metrics.add(new Metric<>("cache.account-natural-id.size", naturalId.getElementCountInMemory()));
+        }
+
+        return metrics;
+    }
+
+}
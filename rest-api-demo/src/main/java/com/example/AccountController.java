@@ -1,7 +1,20 @@
 package com.example;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Created by sun on 2016/11/20.
@@ -11,66 +24,124 @@ import org.springframework.web.bind.annotation.*;
 @RequestMapping("/api/accounts")
 public class AccountController { // 1
 
+    private static final Set<String> PATCHABLE_FIELDS = new HashSet<>(Arrays.asList("email", "firstName", "lastName", "age", "gender"));
+
     @Autowired
     private AccountRepository accountRepository; // 2
 
-    @RequestMapping(method = RequestMethod.POST, value = "/add")
-    public Account add(@RequestBody Account account){ // 3
+    @Autowired
+    private AccountExecutor accountExecutor;
 
-        if(accountRepository.findByUsername(account.getUsername()) != null){
-            throw new IllegalArgumentException("用户已经存在！");
-        }// 4
+    @Autowired
+    private ObjectMapper objectMapper;
 
+    @Autowired
+    private AccountBatchService accountBatchService;
 
-        account.setId(0); // 5
-        accountRepository.save(account); // 6
+    @RequestMapping(method = RequestMethod.POST, value = "/add")
+    public CompletableFuture<Account> add(@RequestBody Account account){ // 3
+        return accountExecutor.submit(() -> {
+            account.setId(0); // 5
+            accountRepository.save(account); // 6 username有唯一约束，用户已存在时insert失败，由AccountRestControllerAdvice返回409
 
-        return account; // 7
+            return account; // 7
+        });
     }
 
-    @RequestMapping(method = RequestMethod.GET, value = "/{username}")
-    public Account account(@PathVariable String username) { // 8
+    @RequestMapping(method = RequestMethod.POST, value = "/batch")
+    public CompletableFuture<List<AccountBatchResult>> batch(@RequestBody List<Account> accounts) { // 批量创建，逐个返回处理结果
+        return accountExecutor.submit(() -> accountBatchService.create(accounts));
+    }
 
-        Account account = accountRepository.findByUsername(username);
-        if(account == null){
-            throw new IllegalArgumentException("用户不存在！");
-        }
+    @RequestMapping(method = RequestMethod.DELETE, value = "/batch")
+    public CompletableFuture<Map<String, Integer>> batchDelete(@RequestBody List<String> usernames) { // 批量删除，返回实际删除的数量
+        return accountExecutor.submit(() -> {
+            int deleted = accountBatchService.delete(usernames);
+            return Collections.singletonMap("deleted", deleted);
+        });
+    }
 
-        return account;
+    @RequestMapping(method = RequestMethod.GET, value = "/{username}")
+    public CompletableFuture<Account> account(@PathVariable String username, WebRequest webRequest) { // 8
+        return accountExecutor.submit(() -> {
+            Account account = accountRepository.findByUsername(username);
+            if(account == null){
+                throw new IllegalArgumentException("用户不存在！");
+            }
+            if(webRequest.checkNotModified(AccountETags.of(account))){
+                return null; // 304，If-None-Match与当前版本一致时不生成响应内容
+            }
+
+            return account;
+        });
     }
 
     @RequestMapping(method = RequestMethod.PUT, value = "/update")
-    public Account update(@RequestBody Account account) { // 9
-
-        Account me = accountRepository.findByUsername(account.getUsername());
-        if(me == null){
-            throw new IllegalArgumentException("用户不存在！");
-        }
-
-        me.setPassword(account.getPassword());
-        me.setEmail(account.getEmail());
-        me.setFirstName(account.getFirstName());
-        me.setLastName(account.getLastName());
-        me.setAge(account.getAge());
-        me.setGender(account.getGender());
-
-        me = accountRepository.save(me); // 10
-
-        return me;
+    public CompletableFuture<Account> update(@RequestBody Account account, WebRequest webRequest) { // 9
+        return accountExecutor.submit(() -> {
+            Account me = accountRepository.findByUsername(account.getUsername());
+            if(me == null){
+                throw new IllegalArgumentException("用户不存在！");
+            }
+            AccountETags.checkIfMatch(webRequest, me); // 带If-Match时，版本不一致返回412
+
+            me.setPassword(account.getPassword());
+            me.setEmail(account.getEmail());
+            me.setFirstName(account.getFirstName());
+            me.setLastName(account.getLastName());
+            me.setAge(account.getAge());
+            me.setGender(account.getGender());
+
+            me = accountRepository.save(me); // 10
+            AccountETags.setETag(webRequest, me);
+
+            return me;
+        });
+    }
 
+    @RequestMapping(method = RequestMethod.PATCH, value = "/{username}")
+    public CompletableFuture<Account> patch(@PathVariable String username, @RequestBody ObjectNode changes, WebRequest webRequest) { // 只修改请求中给出的字段
+        return accountExecutor.submit(() -> {
+            Account me = accountRepository.findByUsername(username);
+            if(me == null){
+                throw new IllegalArgumentException("用户不存在！");
+            }
+            AccountETags.checkIfMatch(webRequest, me);
+
+            JsonNode current = objectMapper.valueToTree(me);
+            boolean changed = false;
+            Iterator<String> names = changes.fieldNames();
+            while (names.hasNext()) {
+                String name = names.next();
+                if (!PATCHABLE_FIELDS.contains(name))
+                    throw new IllegalArgumentException("字段" + name + "不能修改！");
+                changed |= !changes.get(name).equals(current.get(name));
+            }
+            if (!changed) {
+                AccountETags.setETag(webRequest, me);
+                return me; // 没有任何变化，不写数据库
+            }
+
+            objectMapper.readerForUpdating(me).readValue(changes);
+            me = accountRepository.save(me); // Account标注了@DynamicUpdate，update语句只包含变化的列
+            AccountETags.setETag(webRequest, me);
+
+            return me;
+        });
     }
 
     @RequestMapping(method = RequestMethod.DELETE, value = "/{username}")
-    public Account delete(@PathVariable String username) { // 11
-
-        Account account = accountRepository.findByUsername(username);
-        if(account == null){
-            throw new IllegalArgumentException("用户不存在！");
-        }
+    public CompletableFuture<Account> delete(@PathVariable String username) { // 11
+        return accountExecutor.submit(() -> {
+            Account account = accountRepository.findByUsername(username);
+            if(account == null){
+                throw new IllegalArgumentException("用户不存在！");
+            }
 
-        accountRepository.delete(account); // 12
+            accountRepository.delete(account); // 12
 
-        return account;
+            return account;
+        });
     }
 
 }
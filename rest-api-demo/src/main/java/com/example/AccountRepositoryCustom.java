@@ -0,0 +1,10 @@
+package com.example;
+
+/**
+ * AccountRepository中需要手工实现的方法，见AccountRepositoryImpl
+ */
+public interface AccountRepositoryCustom {
+
+    Account findByUsername(String username);
+
+}
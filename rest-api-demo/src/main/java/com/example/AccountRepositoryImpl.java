@@ -0,0 +1,25 @@
+package com.example;
+
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+/**
+ * username是Account的natural id，按natural id查找可以命中二级缓存，命中时不访问数据库
+ */
+public class AccountRepositoryImpl implements AccountRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Account findByUsername(String username) {
+        if (username == null)
+            return null;
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(Account.class).load(username);
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.example;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+/**
+ * 对比add的两种写法的平均耗时，不在mvn test中运行，需单独执行：
+ * mvn test -Dtest=AccountAddBenchmark
+ * check-then-insert为原先的做法（先用findByUsername检查再保存），insert为现在的做法（直接保存，依靠唯一约束）
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:account-add-benchmark",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.jpa.database=H2",
+		"spring.jpa.show-sql=false",
+		"spring.jpa.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.hibernate.ddl-auto=create-drop"})
+public class AccountAddBenchmark {
+
+	private static final int ROUNDS = 500;
+
+	@Autowired
+	private AccountRepository accountRepository;
+
+	@Test
+	public void addLatency() {
+		for (int i = 0; i < ROUNDS; i++) { // 预热
+			checkThenInsert("warm-a" + i);
+			insert("warm-b" + i);
+		}
+
+		long checkThenInsert = 0;
+		long insert = 0;
+		for (int i = 0; i < ROUNDS; i++) {
+			long t0 = System.nanoTime();
+			checkThenInsert("check" + i);
+			long t1 = System.nanoTime();
+			insert("insert" + i);
+			long t2 = System.nanoTime();
+			checkThenInsert += t1 - t0;
+			insert += t2 - t1;
+		}
+
+		System.out.printf("add latency: check-then-insert %d us, insert %d us%n",
+				checkThenInsert / ROUNDS / 1000, insert / ROUNDS / 1000);
+	}
+
+	private void checkThenInsert(String username) { // 原先add()的做法：先查询再保存
+		if (accountRepository.findByUsername(username) == null)
+			accountRepository.save(new Account(username, null, null, null, null, null, null));
+	}
+
+	private void insert(String username) {
+		accountRepository.save(new Account(username, null, null, null, null, null, null));
+	}
+
+}
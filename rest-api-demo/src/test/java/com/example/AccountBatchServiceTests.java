@@ -0,0 +1,68 @@
+package com.example;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:account-batch-service-tests",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.jpa.database=H2",
+		"spring.jpa.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.hibernate.ddl-auto=create-drop"})
+public class AccountBatchServiceTests {
+
+	@Autowired
+	private AccountBatchService accountBatchService;
+
+	@Autowired
+	private AccountRepository accountRepository;
+
+	@Test
+	public void usernamesDifferingOnlyInCaseAreDuplicates() { // 与已有账户的比较由数据库的排序规则决定，H2区分大小写，这里只检查同一批中的账户
+		List<AccountBatchResult> results = accountBatchService.create(Arrays.asList(account("lisi"), account("LiSi")));
+
+		assertEquals(AccountBatchResult.Status.CREATED, results.get(0).getStatus());
+		assertEquals(AccountBatchResult.Status.DUPLICATE, results.get(1).getStatus());
+	}
+
+	@Test
+	public void conflictAtFlushFallsBackToSingleInserts() {
+		accountRepository.save(new Account("wangwu", null, null, null, null, null, null));
+		Object target = AopTestUtils.getTargetObject(accountBatchService);
+		ReflectionTestUtils.setField(target, "accountRepository", Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{AccountRepository.class},
+				(proxy, method, args) -> "findUsernamesIn".equals(method.getName())
+						? Collections.emptyList() // 模拟查询之后其他请求插入了wangwu
+						: method.invoke(accountRepository, args)));
+		try {
+			List<AccountBatchResult> results = accountBatchService.create(Arrays.asList(account("zhaoliu"), account("wangwu"), account("sunqi")));
+
+			assertEquals(AccountBatchResult.Status.CREATED, results.get(0).getStatus());
+			assertEquals(AccountBatchResult.Status.DUPLICATE, results.get(1).getStatus());
+			assertEquals(AccountBatchResult.Status.CREATED, results.get(2).getStatus());
+			assertNotNull(accountRepository.findByUsername("zhaoliu"));
+			assertNotNull(accountRepository.findByUsername("sunqi"));
+		} finally {
+			ReflectionTestUtils.setField(target, "accountRepository", accountRepository);
+		}
+	}
+
+	private static Account account(String username) {
+		return new Account(username, username, null, null, null, null, null);
+	}
+
+}
@@ -0,0 +1,102 @@
+package com.example;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"spring.datasource.url=jdbc:h2:mem:account-controller-tests",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.jpa.database=H2",
+		"spring.jpa.show-sql=false",
+		"spring.jpa.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.hibernate.ddl-auto=create-drop"})
+public class AccountControllerTests {
+
+	private static final int THREADS = 16;
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private AccountRepository accountRepository;
+
+	@Autowired
+	private WebApplicationContext context;
+
+	@Test
+	public void concurrentAddCreatesOneAccount() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<HttpStatus>> statuses = new ArrayList<>();
+		for (int i = 0; i < THREADS; i++) {
+			statuses.add(executor.submit(() -> {
+				start.await();
+				return add("zhangsan").getStatusCode();
+			}));
+		}
+		start.countDown();
+
+		int created = 0;
+		int conflicts = 0;
+		for (Future<HttpStatus> status : statuses) {
+			HttpStatus code = status.get();
+			if (code == HttpStatus.OK)
+				created++;
+			else if (code == HttpStatus.CONFLICT)
+				conflicts++;
+		}
+		executor.shutdown();
+
+		assertEquals(1, created);
+		assertEquals(THREADS - 1, conflicts);
+		assertNotNull(accountRepository.findByUsername("zhangsan"));
+	}
+
+	@Test
+	public void duplicateAddReturnsConflict() {
+		assertEquals(HttpStatus.OK, add("lisi").getStatusCode());
+		assertEquals(HttpStatus.CONFLICT, add("lisi").getStatusCode());
+	}
+
+	@Test
+	public void directModeDoesNotStartAsyncProcessing() throws Exception { // 默认的direct模式不经过ASYNC分派
+		assertEquals(HttpStatus.OK, add("wangwu").getStatusCode());
+		MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+
+		mockMvc.perform(get("/api/accounts/wangwu"))
+				.andExpect(request().asyncNotStarted())
+				.andExpect(status().isOk());
+		mockMvc.perform(get("/api/accounts/nobody"))
+				.andExpect(request().asyncNotStarted())
+				.andExpect(status().isBadRequest());
+	}
+
+	private ResponseEntity<String> add(String username) {
+		return restTemplate.postForEntity("/api/accounts/add", new Account(username, null, null, null, null, null, null), String.class);
+	}
+
+}
@@ -0,0 +1,195 @@
+package com.example;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.embedded.LocalServerPort;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.sql.DataSource;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 高并发下对比account.execution.mode的吞吐量，不在mvn test中运行，需单独执行：
+ * mvn test -Dtest=AccountExecutionBenchmark -Dbenchmark.mode=direct
+ * mvn test -Dtest=AccountExecutionBenchmark -Dbenchmark.mode=pool
+ * 请求GET /api/accounts/{username}，账户本身由二级缓存返回，但每个事务仍要获取数据库连接，
+ * 获取连接时等待benchmark.db-latency-ms毫秒，模拟数据库访问的网络延迟。
+ * 负载进行到一半时记录服务端线程数和GC之后的堆内存，与reactive-api-demo的AccountLoadBenchmark对比每个连接的开销
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"spring.datasource.url=jdbc:h2:mem:account-execution-benchmark",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.tomcat.max-active=400",
+		"spring.jpa.database=H2",
+		"spring.jpa.show-sql=false",
+		"spring.jpa.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.hibernate.ddl-auto=create-drop",
+		"server.tomcat.max-threads=${benchmark.tomcat-threads:50}",
+		"account.execution.mode=${benchmark.mode:pool}",
+		"account.execution.pool-size=${benchmark.pool-size:400}",
+		"account.execution.queue-capacity=10000"})
+public class AccountExecutionBenchmark {
+
+	private static final String CLIENT_THREAD_PREFIX = "load-client-";
+
+	static {
+		System.setProperty("http.maxConnections", "10000"); // 每个客户端线程保持自己的keep-alive连接
+	}
+
+	@LocalServerPort
+	private int port;
+
+	@Value("${account.execution.mode}")
+	private String mode;
+
+	@Value("${benchmark.clients:400}")
+	private int clients;
+
+	@Value("${benchmark.seconds:10}")
+	private int seconds;
+
+	@Test
+	public void getAccount() throws Exception {
+		if (request("POST", "/api/accounts/add", "{\"username\":\"zhangsan\"}") != 200)
+			throw new IllegalStateException("创建测试用户失败");
+
+		long[] idle = sample(); // 还没有客户端连接
+		run(2, null); // 预热
+		long[] loaded = new long[2];
+		long[] latencies = run(seconds, loaded);
+		Arrays.sort(latencies);
+		System.out.printf("mode=%s clients=%d: %d requests in %ds, %.0f req/s, p50 %.1f ms, p99 %.1f ms%n",
+				mode, clients, latencies.length, seconds, latencies.length / (double) seconds,
+				percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6);
+		System.out.printf("server threads idle %d, under load %d (%.2f per connection); heap %+.1f KB per connection%n",
+				idle[0], loaded[0], (loaded[0] - idle[0]) / (double) clients, (loaded[1] - idle[1]) / 1024.0 / clients);
+	}
+
+	/**
+	 * 当前的服务端线程数（不含客户端线程）和GC之后的已用堆内存
+	 */
+	private static long[] sample() {
+		System.gc();
+		long threads = Thread.getAllStackTraces().keySet().stream()
+				.filter(thread -> !thread.getName().startsWith(CLIENT_THREAD_PREFIX))
+				.count();
+		return new long[]{threads, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed()};
+	}
+
+	private long[] run(int durationSeconds, long[] loaded) throws Exception {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+		AtomicLong errors = new AtomicLong();
+		long[][] perClient = new long[clients][];
+		CountDownLatch done = new CountDownLatch(clients);
+
+		for (int i = 0; i < clients; i++) {
+			int client = i;
+			Thread thread = new Thread(() -> {
+				long[] latencies = new long[1024];
+				int count = 0;
+				try {
+					while (System.nanoTime() < deadline) {
+						long start = System.nanoTime();
+						if (request("GET", "/api/accounts/zhangsan", null) != 200)
+							errors.incrementAndGet();
+						if (count == latencies.length)
+							latencies = Arrays.copyOf(latencies, count * 2);
+						latencies[count++] = System.nanoTime() - start;
+					}
+				} catch (Exception e) {
+					errors.incrementAndGet();
+				} finally {
+					perClient[client] = Arrays.copyOf(latencies, count);
+					done.countDown();
+				}
+			}, CLIENT_THREAD_PREFIX + i);
+			thread.start();
+		}
+		if (loaded != null && !done.await(durationSeconds * 500L, TimeUnit.MILLISECONDS)) {
+			long[] sample = sample(); // 所有连接都已建立并在处理请求
+			System.arraycopy(sample, 0, loaded, 0, sample.length);
+		}
+		done.await();
+
+		if (errors.get() > 0)
+			System.out.println("errors: " + errors.get());
+		return Arrays.stream(perClient).flatMapToLong(Arrays::stream).toArray();
+	}
+
+	private int request(String method, String path, String body) throws Exception {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+		connection.setRequestMethod(method);
+		if (body != null) {
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "application/json");
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(body.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		int status = connection.getResponseCode();
+		try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+			byte[] buffer = new byte[1024];
+			while (in != null && in.read(buffer) >= 0) {
+				// 读完响应以便复用连接
+			}
+		}
+		return status;
+	}
+
+	private static long percentile(long[] sorted, double p) {
+		return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+	}
+
+	@TestConfiguration
+	static class LatencyConfig {
+
+		@Bean
+		public static BeanPostProcessor slowDataSource(@Value("${benchmark.db-latency-ms:20}") long latencyMillis) {
+			return new BeanPostProcessor() {
+				@Override
+				public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+					return bean;
+				}
+
+				@Override
+				public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+					if (!(bean instanceof DataSource) || bean instanceof DelegatingDataSource)
+						return bean;
+					return new DelegatingDataSource((DataSource) bean) {
+						@Override
+						public Connection getConnection() throws SQLException {
+							try {
+								Thread.sleep(latencyMillis);
+							} catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+							}
+							return super.getConnection();
+						}
+					};
+				}
+			};
+		}
+
+	}
+
+}
@@ -0,0 +1,43 @@
+package com.example;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AccountExecutorTests {
+
+	@Test
+	public void directModeCompletesBeforeReturning() throws Exception {
+		AccountExecutor executor = new AccountExecutor("direct", 1, 1, 100);
+		assertTrue(executor.submit(() -> "zhangsan").isDone());
+		executor.destroy();
+	}
+
+	@Test
+	public void queuedTaskIsSkippedAfterRequestTimeout() throws Exception {
+		AccountExecutor executor = new AccountExecutor("pool", 1, 10, 50);
+		CountDownLatch release = new CountDownLatch(1);
+		executor.submit(() -> release.await(5, TimeUnit.SECONDS)); // 占住唯一的线程
+		AtomicBoolean ran = new AtomicBoolean();
+		CompletableFuture<Boolean> queued = executor.submit(() -> ran.getAndSet(true));
+
+		Thread.sleep(100); // 超过请求超时时间
+		release.countDown();
+		try {
+			queued.get(5, TimeUnit.SECONDS);
+		} catch (Exception e) {
+			// 已取消
+		}
+
+		assertTrue(queued.isCancelled());
+		assertFalse(ran.get());
+		executor.destroy();
+	}
+
+}
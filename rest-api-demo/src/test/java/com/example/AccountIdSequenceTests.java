@@ -0,0 +1,45 @@
+package com.example;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:account-id-sequence-tests",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.jpa.database=H2",
+		"spring.jpa.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.hibernate.ddl-auto=create-drop"})
+public class AccountIdSequenceTests {
+
+	private static final long EXISTING_ID = 1000;
+
+	@Autowired
+	private AccountRepository accountRepository;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Test
+	public void sequenceBehindExistingIdsIsMovedPastThem() throws Exception {
+		new JdbcTemplate(dataSource).update("insert into t_account (id, username, version) values (?, 'zhengshi', 0)", EXISTING_ID); // 由自增主键写入的已有账户
+		new AccountIdSequence(dataSource, entityManagerFactory); // 相当于重新启动
+
+		Account account = accountRepository.save(new Account("chenyi", null, null, null, null, null, null));
+		assertTrue(account.getId() > EXISTING_ID);
+	}
+
+}
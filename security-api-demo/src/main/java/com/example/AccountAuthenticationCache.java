@@ -0,0 +1,125 @@
+package com.example;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Element;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 认证结果缓存，key为用户名，value中保存认证通过时所用密码的摘要，
+ * 同一用户用同一密码再次认证时既不查库也不做密码校验。
+ * 缓存大小和过期时间见ehcache.xml中的authentication
+ */
+@Component
+public class AccountAuthenticationCache implements PublicMetrics {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final Cache cache;
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> mac;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder verifications = new LongAdder();
+    private final LongAdder verifyNanos = new LongAdder();
+
+    public AccountAuthenticationCache() {
+        this.cache = CacheManager.create().getCache("authentication"); // 与hibernate二级缓存共用同一个CacheManager
+
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret); // 摘要密钥只在本进程内有效，缓存中不保存可逆的密码信息
+        this.key = new SecretKeySpec(secret, HMAC_ALGORITHM);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    public byte[] digest(String password) {
+        return mac.get().doFinal(password.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Entry get(String username, byte[] digest) {
+        Element element = cache.get(username);
+        if (element != null) {
+            Entry entry = (Entry) element.getObjectValue();
+            if (MessageDigest.isEqual(entry.digest, digest)) {
+                hits.increment();
+                return entry;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(String username, byte[] digest, Object principal, Collection<? extends GrantedAuthority> authorities) {
+        cache.put(new Element(username, new Entry(digest, principal, authorities)));
+    }
+
+    public void evict(String username) {
+        cache.remove(username);
+    }
+
+    public void recordVerification(long nanos) {
+        verifications.increment();
+        verifyNanos.add(nanos);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        long hit = hits.sum();
+        long miss = misses.sum();
+        long verified = verifications.sum();
+
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("cache.authentication.hit", hit));
+        metrics.add(new Metric<>("cache.authentication.miss", miss));
+        metrics.add(new Metric<>("cache.authentication.hit-ratio", hit + miss == 0 ? 0.0 : (double) hit / (hit + miss)));
+        metrics.add(new Metric<>("cache.authentication.size", cache.getSize()));
+        metrics.add(new Metric<>("authentication.verify.count", verified));
+        metrics.add(new Metric<>("authentication.verify.mean-micros", verified == 0 ? 0.0 : verifyNanos.sum() / 1000.0 / verified));
+        return metrics;
+    }
+
+    public static class Entry {
+
+        private final byte[] digest;
+        private final Object principal;
+        private final Collection<? extends GrantedAuthority> authorities;
+
+        Entry(byte[] digest, Object principal, Collection<? extends GrantedAuthority> authorities) {
+            this.digest = digest;
+            this.principal = principal;
+            this.authorities = authorities;
+        }
+
+        public Object getPrincipal() {
+            return principal;
+        }
+
+        public Collection<? extends GrantedAuthority> getAuthorities() {
+            return authorities;
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.example;
+
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+
+/**
+ * 在真正的认证（查库、校验密码）之前先查AccountAuthenticationCache，命中则直接返回
+ */
+public class AccountAuthenticationProvider implements AuthenticationProvider {
+
+    private final AuthenticationProvider delegate;
+    private final AccountAuthenticationCache cache;
+
+    public AccountAuthenticationProvider(AuthenticationProvider delegate, AccountAuthenticationCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String username = authentication.getName();
+        Object credentials = authentication.getCredentials();
+        if (username == null || credentials == null)
+            return delegate.authenticate(authentication);
+
+        byte[] digest = cache.digest(credentials.toString());
+        AccountAuthenticationCache.Entry entry = cache.get(username, digest);
+        if (entry != null) {
+            UsernamePasswordAuthenticationToken result = new UsernamePasswordAuthenticationToken(entry.getPrincipal(), null, entry.getAuthorities());
+            result.setDetails(authentication.getDetails());
+            return result;
+        }
+
+        Authentication result;
+        long start = System.nanoTime();
+        try {
+            result = delegate.authenticate(authentication);
+        } finally {
+            cache.recordVerification(System.nanoTime() - start);
+        }
+
+        if (result != null && result.isAuthenticated())
+            cache.put(username, digest, result.getPrincipal(), result.getAuthorities());
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return delegate.supports(authentication);
+    }
+
+}
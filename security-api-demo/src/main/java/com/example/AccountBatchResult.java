@@ -0,0 +1,42 @@
+package com.example;
+
+/**
+ * 批量创建账户时单个账户的处理结果
+ */
+public class AccountBatchResult {
+
+    public enum Status {
+        CREATED, // 创建成功
+        DUPLICATE, // 用户名已存在，或与本次请求中前面的账户重复（不区分大小写）
+        INVALID // 用户名为空或超长
+    }
+
+    private final int index;
+    private final String username;
+    private final Status status;
+    private final Long id;
+
+    AccountBatchResult(int index, String username, Status status, Long id) {
+        this.index = index;
+        this.username = username;
+        this.status = status;
+        this.id = id;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AccountController中接口的执行方式，由account.execution.mode决定：
+ * direct - 在Tomcat请求线程上执行（默认），返回已完成的CompletableFuture，由CompletedFutureReturnValueHandler按同步返回值处理
+ * pool - 在有界线程池中执行，等待数据库期间Tomcat线程可以处理其他请求，队列满时返回503
+ * virtual - 每个请求一个虚拟线程，运行时不支持虚拟线程时按pool执行
+ * 超时时间由spring.mvc.async.request-timeout配置，超时时还在队列中的任务轮到执行时直接取消，不再占用线程和数据库连接
+ */
+@Component
+public class AccountExecutor implements PublicMetrics, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountExecutor.class);
+
+    private final ExecutorService executor; // direct模式下为null
+    private final long timeoutNanos;
+
+    private final LongAdder expired = new LongAdder();
+
+    public AccountExecutor(@Value("${account.execution.mode:direct}") String mode,
+                           @Value("${account.execution.pool-size:200}") int poolSize,
+                           @Value("${account.execution.queue-capacity:1000}") int queueCapacity,
+                           @Value("${spring.mvc.async.request-timeout:30000}") long timeoutMillis) { // 未配置时为Tomcat默认的30秒
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        switch (mode) {
+            case "direct":
+                this.executor = null;
+                break;
+            case "virtual":
+                ExecutorService virtual = newVirtualThreadExecutor();
+                this.executor = virtual != null ? virtual : newPool(poolSize, queueCapacity);
+                break;
+            case "pool":
+                this.executor = newPool(poolSize, queueCapacity);
+                break;
+            default:
+                throw new IllegalArgumentException("account.execution.mode只能是direct、pool或virtual：" + mode);
+        }
+    }
+
+    /**
+     * 执行task，执行期间可以通过RequestContextHolder访问当前请求（生成链接时需要）
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (executor == null) {
+            run(task, future);
+            return future;
+        }
+
+        RequestAttributes attributes = workerAttributes();
+        long deadline = System.nanoTime() + timeoutNanos;
+        try {
+            executor.execute(() -> {
+                if (timeoutNanos > 0 && System.nanoTime() - deadline >= 0) { // 请求已经超时返回503，不再执行
+                    expired.increment();
+                    future.cancel(false);
+                    return;
+                }
+                RequestContextHolder.setRequestAttributes(attributes);
+                try {
+                    run(task, future);
+                } finally {
+                    RequestContextHolder.resetRequestAttributes();
+                }
+            });
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e); // 线程池队列已满，由AccountRestControllerAdvice返回503
+        }
+        return future;
+    }
+
+    /**
+     * 请求线程上的RequestAttributes在处理方法返回后就失效了，工作线程使用基于同一请求的新对象
+     */
+    private static RequestAttributes workerAttributes() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes))
+            return attributes;
+        ServletRequestAttributes servletAttributes = (ServletRequestAttributes) attributes;
+        return new ServletRequestAttributes(servletAttributes.getRequest(), servletAttributes.getResponse());
+    }
+
+    private static <T> void run(Callable<T> task, CompletableFuture<T> future) {
+        try {
+            future.complete(task.call());
+        } catch (Throwable e) {
+            future.completeExceptionally(e); // 不包装成CompletionException，异常处理与同步执行时一致
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        Collection<Metric<?>> metrics = new ArrayList<>();
+        if (executor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            metrics.add(new Metric<Number>("account.executor.active", pool.getActiveCount()));
+            metrics.add(new Metric<Number>("account.executor.queued", pool.getQueue().size()));
+            metrics.add(new Metric<Number>("account.executor.completed", pool.getCompletedTaskCount()));
+        }
+        if (executor != null)
+            metrics.add(new Metric<Number>("account.executor.expired", expired.sum()));
+        return metrics;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static ExecutorService newPool(int poolSize, int queueCapacity) {
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "account-exec-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null); // JDK 21及以上
+        } catch (ReflectiveOperationException e) {
+            logger.warn("当前运行时不支持虚拟线程，account.execution.mode=virtual按pool执行");
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.example;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * 以NDJSON（每行一个JSON）格式导出全部账户，边读游标边写输出流，内存占用与数据量无关
+ */
+@Service
+public class AccountExporter {
+
+    private static final int CLEAR_INTERVAL = 1000;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ObjectWriter writer;
+
+    @Autowired
+    public AccountExporter(ObjectMapper objectMapper) {
+        this.writer = objectMapper.writerFor(Account.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE); // 每行写完不flush，由输出缓冲区决定
+    }
+
+    @Transactional(readOnly = true)
+    public long export(OutputStream out) throws IOException {
+        long count = 0;
+        try (Stream<Account> accounts = accountRepository.streamAll();
+             JsonGenerator generator = writer.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            Iterator<Account> it = accounts.iterator();
+            while (it.hasNext()) {
+                writer.writeValue(generator, it.next());
+                generator.writeRaw('\n');
+                if (++count % CLEAR_INTERVAL == 0) {
+                    entityManager.clear(); // 释放持久化上下文中已写出的实体
+                    generator.flush();
+                }
+            }
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.example;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按名称记录延迟直方图（微秒），发布到/manage/metrics：latency.{名称}.count、p50、p99、p999、max。
+ * 请求线程通过HdrHistogram的Recorder记录，无锁且不分配内存；发布时才把新记录的数据合并到累计的直方图中。
+ * 由account.metrics.latency.enabled控制是否记录，运行时可以通过JMX修改Enabled属性或调用reset清空
+ */
+@Component
+@ManagedResource(description = "AccountController、AccountRepository和安全过滤器的延迟直方图")
+public class AccountLatencyMetrics implements PublicMetrics {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1); // 超过1分钟按1分钟记录
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private volatile boolean enabled;
+
+    public AccountLatencyMetrics(@Value("${account.metrics.latency.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @ManagedAttribute(description = "是否记录延迟")
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @ManagedAttribute
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @ManagedOperation(description = "清空已记录的数据")
+    public synchronized void reset() {
+        for (Timer timer : timers.values()) {
+            timer.recorder.reset();
+            timer.total.reset();
+        }
+    }
+
+    /**
+     * 返回指定名称的Timer，调用方应缓存返回值，记录时不再按名称查找
+     */
+    public Timer timer(String name) {
+        return timers.computeIfAbsent(name, Timer::new);
+    }
+
+    @Override
+    public synchronized Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>(timers.size() * 5);
+        for (Timer timer : timers.values()) {
+            timer.interval = timer.recorder.getIntervalHistogram(timer.interval);
+            timer.total.add(timer.interval);
+
+            Histogram total = timer.total;
+            if (total.getTotalCount() == 0)
+                continue; // 还没有调用过的操作不发布
+            String prefix = "latency." + timer.name;
+            metrics.add(new Metric<Number>(prefix + ".count", total.getTotalCount()));
+            metrics.add(new Metric<Number>(prefix + ".p50", total.getValueAtPercentile(50)));
+            metrics.add(new Metric<Number>(prefix + ".p99", total.getValueAtPercentile(99)));
+            metrics.add(new Metric<Number>(prefix + ".p999", total.getValueAtPercentile(99.9)));
+            metrics.add(new Metric<Number>(prefix + ".max", total.getMaxValue()));
+        }
+        return metrics;
+    }
+
+    public static final class Timer {
+
+        private final String name;
+        private final Recorder recorder = new Recorder(1, HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+        private final Histogram total = new Histogram(1, HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+        private Histogram interval; // 发布时复用，由metrics()在锁内访问
+
+        private Timer(String name) {
+            this.name = name;
+        }
+
+        /**
+         * 记录从startNanos（System.nanoTime()）到现在的耗时
+         */
+        public void record(long startNanos) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+            recorder.recordValue(Math.min(Math.max(micros, 0), HIGHEST_TRACKABLE_MICROS));
+        }
+
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.example;
+
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.mvc.ControllerLinkBuilder;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.util.UriUtils;
+
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * AccountResource的链接模板，按AccountController的映射只解析一次，
+ * 之后生成链接只需拼接当前请求的基础地址和用户名
+ */
+final class AccountLinks {
+
+    private static final String BASE_URI_ATTRIBUTE = AccountLinks.class.getName() + ".BASE_URI";
+    private static final String USERNAME_VARIABLE = "{username}";
+
+    private static final String ADD = mapping("add");
+    private static final String ACCOUNT = mapping("account");
+    private static final String UPDATE = mapping("update");
+    private static final String DELETE = mapping("delete");
+
+    private AccountLinks() {
+    }
+
+    static List<Link> forAccount(String username) {
+        String base = baseUri();
+        String encoded = encode(username);
+
+        List<Link> links = new ArrayList<>(4);
+        links.add(new Link(base + ADD, "add"));
+        links.add(new Link(base + ACCOUNT.replace(USERNAME_VARIABLE, encoded), Link.REL_SELF));
+        links.add(new Link(base + UPDATE, "update"));
+        links.add(new Link(base + DELETE.replace(USERNAME_VARIABLE, encoded), "delete"));
+        return links;
+    }
+
+    /**
+     * 当前请求下AccountController的基础地址（已处理Forwarded/X-Forwarded-*头），同一请求内只计算一次
+     */
+    private static String baseUri() {
+        RequestAttributes attributes = RequestContextHolder.currentRequestAttributes();
+        String base = (String) attributes.getAttribute(BASE_URI_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (base == null) {
+            base = ControllerLinkBuilder.linkTo(AccountController.class).toString();
+            attributes.setAttribute(BASE_URI_ATTRIBUTE, base, RequestAttributes.SCOPE_REQUEST);
+        }
+        return base;
+    }
+
+    private static String mapping(String methodName) {
+        for (Method method : AccountController.class.getMethods()) {
+            RequestMapping mapping = method.getAnnotation(RequestMapping.class);
+            if (method.getName().equals(methodName) && mapping != null) {
+                return mapping.value()[0];
+            }
+        }
+        throw new IllegalStateException("AccountController." + methodName + "()没有@RequestMapping");
+    }
+
+    private static String encode(String username) {
+        try {
+            return UriUtils.encodePathSegment(username, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
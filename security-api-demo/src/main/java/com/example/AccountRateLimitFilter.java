@@ -0,0 +1,71 @@
+package com.example;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在springSecurityFilterChain之前按来源IP和用户名（Basic认证或会话token中的）限流，只解析请求头，不访问数据库、不校验密码，
+ * 因此撞库时错误的密码同样消耗该用户名的令牌。超过限制时直接返回429和Retry-After，没有响应体
+ */
+public class AccountRateLimitFilter extends OncePerRequestFilter {
+
+    private final AccountRateLimiter accountRateLimiter;
+
+    public AccountRateLimitFilter(AccountRateLimiter accountRateLimiter) {
+        this.accountRateLimiter = accountRateLimiter;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long wait = accountRateLimiter.ip().acquire(request.getRemoteAddr());
+        if (wait == 0)
+            wait = accountRateLimiter.user().acquire(username(request));
+
+        if (wait > 0) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(TimeUnit.NANOSECONDS.toSeconds(wait) + 1)); // 向上取整
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * Basic认证的用户名，没有时为无状态模式下会话token中的用户名（不校验签名）
+     */
+    private static String username(HttpServletRequest request) {
+        String username = basicUsername(request.getHeader(HttpHeaders.AUTHORIZATION));
+        if (username == null) {
+            String token = request.getHeader(AccountSessionTokens.HEADER);
+            if (token != null)
+                username = AccountSessionTokens.username(token);
+        }
+        return username;
+    }
+
+    /**
+     * Authorization: Basic中的用户名，格式不对时返回null，由BasicAuthenticationFilter处理
+     */
+    static String basicUsername(String authorization) {
+        if (authorization == null || !authorization.startsWith("Basic "))
+            return null;
+        try {
+            String credentials = new String(Base64.getDecoder().decode(authorization.substring(6).trim()), StandardCharsets.UTF_8);
+            int colon = credentials.indexOf(':');
+            return colon < 0 ? null : credentials.substring(0, colon);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+}
@@ -1,12 +1,30 @@
 package com.example;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Created by sun on 2016/11/20.
  */
-public interface AccountRepository extends CrudRepository<Account, Long> {
+public interface AccountRepository extends CrudRepository<Account, Long>, AccountRepositoryCustom {
+
+    List<Account> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable); // 下一页：id > 游标，升序
+
+    List<Account> findByIdLessThanOrderByIdDesc(long id, Pageable pageable); // 上一页：id < 游标，降序
+
+    @Query("select a.username from Account a where a.username in :usernames")
+    List<String> findUsernamesIn(@Param("usernames") Collection<String> usernames); // 批量创建时一次查出已存在的用户名
 
-    Account findByUsername(String username);
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("delete from Account a where a.username in :usernames")
+    int deleteByUsernameIn(@Param("usernames") Collection<String> usernames); // 一条delete语句，hibernate会清空Account的二级缓存区域
 
 }
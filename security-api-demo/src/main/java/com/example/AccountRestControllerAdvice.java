@@ -1,12 +1,20 @@
 package com.example;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.hateoas.VndErrors;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * Created by sunxiaopeng on 2016/11/16.
  */
@@ -14,6 +22,11 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 @ControllerAdvice
 public class AccountRestControllerAdvice { // 1
 
+    private static final Logger logger = LoggerFactory.getLogger(AccountRestControllerAdvice.class);
+
+    @Autowired
+    private AccountUsernameConstraint accountUsernameConstraint;
+
     @ResponseBody
     @ExceptionHandler({IllegalArgumentException.class})
     @ResponseStatus(HttpStatus.BAD_REQUEST)
@@ -21,4 +34,30 @@ public class AccountRestControllerAdvice { // 1
         return new VndErrors("error", e.getMessage()); // 3
     }
 
+    @ResponseBody
+    @ExceptionHandler({DataIntegrityViolationException.class})
+    ResponseEntity<VndErrors> dataIntegrityViolationExceptionHandler(DataIntegrityViolationException e) { // 违反username上的唯一约束（用户名已被占用）返回409，其他唯一约束返回500，其它约束返回400
+        if (accountUsernameConstraint.isViolatedBy(e))
+            return new ResponseEntity<>(new VndErrors("error", "用户已经存在！"), HttpStatus.CONFLICT);
+        if (accountUsernameConstraint.isDuplicateKey(e)) { // 主键等其他唯一约束冲突不是请求的问题，例如t_account_seq落后于已有的id
+            logger.error("保存账户时违反唯一约束", e);
+            return new ResponseEntity<>(new VndErrors("error", "保存失败！"), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        return new ResponseEntity<>(new VndErrors("error", "数据不合法！"), HttpStatus.BAD_REQUEST);
+    }
+
+    @ResponseBody
+    @ExceptionHandler({OptimisticLockingFailureException.class})
+    @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+    VndErrors optimisticLockingFailureExceptionHandler(OptimisticLockingFailureException e) { // If-Match版本不一致，或保存时发现版本已被其他请求修改
+        return new VndErrors("error", "用户已被修改！");
+    }
+
+    @ResponseBody
+    @ExceptionHandler({RejectedExecutionException.class})
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    VndErrors rejectedExecutionExceptionHandler(RejectedExecutionException e) { // AccountExecutor的线程池队列已满
+        return new VndErrors("error", "服务繁忙，请稍后重试！");
+    }
+
 }
@@ -0,0 +1,113 @@
+package com.example;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.security.web.FilterChainProxy;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 记录安全过滤器链中每个过滤器自身的耗时（filter.{过滤器类名}）：从进入过滤器到它调用下一个过滤器为止，
+ * 不包括后面的过滤器和Controller；过滤器直接返回响应（如认证失败）时记录到返回为止
+ */
+@Component
+public class AccountSecurityFilterMetrics implements BeanPostProcessor {
+
+    private final AccountLatencyMetrics accountLatencyMetrics;
+
+    public AccountSecurityFilterMetrics(AccountLatencyMetrics accountLatencyMetrics) {
+        this.accountLatencyMetrics = accountLatencyMetrics;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (bean instanceof FilterChainProxy) {
+            for (SecurityFilterChain chain : ((FilterChainProxy) bean).getFilterChains()) {
+                List<Filter> filters = chain.getFilters(); // DefaultSecurityFilterChain返回的是可修改的列表
+                for (int i = 0; i < filters.size(); i++) {
+                    Filter filter = filters.get(i);
+                    filters.set(i, new TimedFilter(filter, accountLatencyMetrics.timer("filter." + filter.getClass().getSimpleName())));
+                }
+            }
+        }
+        return bean;
+    }
+
+    private final class TimedFilter implements Filter {
+
+        private final Filter delegate;
+        private final AccountLatencyMetrics.Timer timer;
+
+        TimedFilter(Filter delegate, AccountLatencyMetrics.Timer timer) {
+            this.delegate = delegate;
+            this.timer = timer;
+        }
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+            if (!accountLatencyMetrics.isEnabled()) {
+                delegate.doFilter(request, response, chain);
+                return;
+            }
+
+            TimedChain next = new TimedChain(chain, System.nanoTime());
+            try {
+                delegate.doFilter(request, response, next);
+            } finally {
+                next.stop();
+            }
+        }
+
+        @Override
+        public void init(FilterConfig filterConfig) throws ServletException {
+            delegate.init(filterConfig);
+        }
+
+        @Override
+        public void destroy() {
+            delegate.destroy();
+        }
+
+        private final class TimedChain implements FilterChain {
+
+            private final FilterChain chain;
+            private final long start;
+            private boolean stopped;
+
+            TimedChain(FilterChain chain, long start) {
+                this.chain = chain;
+                this.start = start;
+            }
+
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException {
+                stop();
+                chain.doFilter(request, response);
+            }
+
+            void stop() {
+                if (!stopped) {
+                    stopped = true;
+                    timer.record(start);
+                }
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 会话token的撤销记录（用户名 -> 撤销时间，毫秒），保存在数据库的t_session_revocation中，各实例共享，重启后仍然有效。
+ * 校验token时只查本地副本，不访问数据库；每隔sync-interval-ms从数据库读回所有实例的记录，
+ * 因此在其他实例上撤销的token最多再有效一个间隔。记录保存一个token有效期后删除。
+ * 非无状态模式时不签发会话token，不建表也不读写数据库
+ */
+@Component
+public class AccountSessionRevocations {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountSessionRevocations.class);
+
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final JdbcTemplate jdbcTemplate;
+    private final ConcurrentHashMap<String, Long> revocations = new ConcurrentHashMap<>();
+
+    public AccountSessionRevocations(DataSource dataSource,
+                                     @Value("${account.security.stateless:false}") boolean enabled,
+                                     @Value("${account.security.session-token.ttl-seconds:900}") long ttlSeconds) {
+        this.enabled = enabled;
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        if (enabled) {
+            jdbcTemplate.execute("create table if not exists t_session_revocation (username varchar(255) not null primary key, revoked_at bigint not null)");
+            load(); // 启动时加载，失败时启动失败，避免重启后已撤销的token重新有效
+        }
+    }
+
+    /**
+     * 记录username在当前时间撤销，先写入数据库，写入失败时抛出异常
+     */
+    public void revoke(String username) {
+        if (!enabled)
+            return;
+        long now = System.currentTimeMillis();
+        try {
+            if (jdbcTemplate.update("update t_session_revocation set revoked_at = ? where username = ?", now, username) == 0)
+                jdbcTemplate.update("insert into t_session_revocation (username, revoked_at) values (?, ?)", username, now);
+        } catch (DuplicateKeyException e) { // 其他实例同时插入
+            jdbcTemplate.update("update t_session_revocation set revoked_at = ? where username = ?", now, username);
+        }
+        revocations.merge(username, now, Math::max);
+    }
+
+    /**
+     * username最近一次撤销的时间，没有时返回null
+     */
+    public Long revokedAt(String username) {
+        return revocations.get(username);
+    }
+
+    public int size() {
+        return revocations.size();
+    }
+
+    /**
+     * 读回所有实例的撤销记录，删除已超过token有效期的记录
+     */
+    @Scheduled(fixedDelayString = "${account.security.session-token.sync-interval-ms:1000}")
+    public void sync() {
+        if (!enabled)
+            return;
+        try {
+            load();
+        } catch (DataAccessException e) {
+            logger.warn("读取会话token撤销记录失败，使用上次读取的结果", e);
+        }
+    }
+
+    private void load() {
+        long expired = System.currentTimeMillis() - ttlMillis; // 这之前签发的token都已过期
+        jdbcTemplate.query("select username, revoked_at from t_session_revocation where revoked_at >= ?",
+                (RowCallbackHandler) rs -> revocations.merge(rs.getString(1), rs.getLong(2), Math::max), expired);
+        jdbcTemplate.update("delete from t_session_revocation where revoked_at < ?", expired);
+        revocations.values().removeIf(revokedAt -> revokedAt < expired);
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.example;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 无状态模式下放在BasicAuthenticationFilter之后：本次请求通过Basic认证时在响应头X-Auth-Token中签发会话token；
+ * 没有Basic认证而带有X-Auth-Token时校验token，有效则直接作为本次请求的认证结果，不加载用户、不校验密码。
+ * token无效或过期时请求按匿名处理，需要认证的接口返回401，客户端重新用Basic认证即可取得新的token
+ */
+public class AccountSessionTokenFilter extends OncePerRequestFilter {
+
+    private final AccountSessionTokens accountSessionTokens;
+
+    public AccountSessionTokenFilter(AccountSessionTokens accountSessionTokens) {
+        this.accountSessionTokens = accountSessionTokens;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Authentication current = SecurityContextHolder.getContext().getAuthentication();
+        String token = request.getHeader(AccountSessionTokens.HEADER);
+        if (current == null && token != null) {
+            Authentication authentication = accountSessionTokens.verify(token);
+            if (authentication != null)
+                SecurityContextHolder.getContext().setAuthentication(authentication);
+        } else if (current != null && current.isAuthenticated() && isBasic(request)) {
+            response.setHeader(AccountSessionTokens.HEADER, accountSessionTokens.issue(current));
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private static boolean isBasic(HttpServletRequest request) {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        return authorization != null && authorization.startsWith("Basic ");
+    }
+
+}
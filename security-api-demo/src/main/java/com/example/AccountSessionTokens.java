@@ -0,0 +1,156 @@
+package com.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无状态模式下的会话token：用户名.过期时间（毫秒）.权限列表.HMAC-SHA256签名，服务端不保存，校验时只计算一次签名。
+ * 修改密码或删除用户时记录撤销时间，在此之前签发的token失效，撤销记录由AccountSessionRevocations在各实例间共享。
+ * 非无状态模式时不生成密钥，不能签发或校验
+ */
+@Component
+public class AccountSessionTokens implements PublicMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountSessionTokens.class);
+
+    public static final String HEADER = "X-Auth-Token";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final long ttlMillis;
+    private final ThreadLocal<Mac> mac; // 非无状态模式时为null
+    private final AccountSessionRevocations revocations;
+
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder verified = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public AccountSessionTokens(@Value("${account.security.stateless:false}") boolean enabled,
+                                @Value("${account.security.session-token.ttl-seconds:900}") long ttlSeconds,
+                                @Value("${account.security.session-token.secret:}") String secret,
+                                AccountSessionRevocations revocations) {
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        this.revocations = revocations;
+        if (!enabled) {
+            this.mac = null;
+            return;
+        }
+
+        byte[] bytes;
+        if (StringUtils.hasText(secret)) {
+            bytes = Base64.getDecoder().decode(secret.trim());
+        } else {
+            bytes = new byte[32];
+            new SecureRandom().nextBytes(bytes);
+            logger.info("未配置account.security.session-token.secret，使用随机密钥，重启后或其他实例签发的会话token无效");
+        }
+        SecretKeySpec key = new SecretKeySpec(bytes, HMAC_ALGORITHM);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    public String issue(Authentication authentication) {
+        String payload = ENCODER.encodeToString(authentication.getName().getBytes(StandardCharsets.UTF_8))
+                + "." + (System.currentTimeMillis() + ttlMillis)
+                + "." + StringUtils.collectionToCommaDelimitedString(AuthorityUtils.authorityListToSet(authentication.getAuthorities()));
+        issued.increment();
+        return payload + "." + sign(payload);
+    }
+
+    /**
+     * 签名正确、未过期且未被撤销时返回认证结果，否则返回null
+     */
+    public Authentication verify(String token) {
+        try {
+            int dot = token.lastIndexOf('.');
+            if (dot > 0) {
+                String payload = token.substring(0, dot);
+                byte[] signature = token.substring(dot + 1).getBytes(StandardCharsets.US_ASCII);
+                String[] fields = payload.split("\\.", 3);
+                if (fields.length == 3 && MessageDigest.isEqual(sign(payload).getBytes(StandardCharsets.US_ASCII), signature)) {
+                    String username = new String(DECODER.decode(fields[0]), StandardCharsets.UTF_8);
+                    long expires = Long.parseLong(fields[1]);
+                    Long revokedAt = revocations.revokedAt(username);
+                    if (expires > System.currentTimeMillis() && (revokedAt == null || expires - ttlMillis > revokedAt)) {
+                        List<GrantedAuthority> authorities = AuthorityUtils.commaSeparatedStringToAuthorityList(fields[2]);
+                        verified.increment();
+                        return new UsernamePasswordAuthenticationToken(new User(username, "", authorities), null, authorities);
+                    }
+                }
+            }
+        } catch (IllegalArgumentException e) { // 包括NumberFormatException
+            // 格式不对，按无效处理
+        }
+        rejected.increment();
+        return null;
+    }
+
+    /**
+     * 使username此前签发的所有token失效，包括其他实例签发的
+     */
+    public void revoke(String username) {
+        revocations.revoke(username);
+    }
+
+    /**
+     * 不校验签名，只取出token中的用户名，用于限流等不需要认证的场合；格式不对时返回null
+     */
+    public static String username(String token) {
+        int dot = token.indexOf('.');
+        if (dot <= 0)
+            return null;
+        try {
+            return new String(DECODER.decode(token.substring(0, dot)), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private String sign(String payload) {
+        if (mac == null)
+            throw new IllegalStateException("account.security.stateless=true时才能签发和校验会话token");
+        return ENCODER.encodeToString(mac.get().doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.<Metric<?>>asList(
+                new Metric<Number>("session-token.issued", issued.sum()),
+                new Metric<Number>("session-token.verified", verified.sum()),
+                new Metric<Number>("session-token.rejected", rejected.sum()),
+                new Metric<Number>("session-token.revocations", revocations.size()));
+    }
+
+}
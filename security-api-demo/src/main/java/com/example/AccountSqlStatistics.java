@@ -0,0 +1,157 @@
+package com.example;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestEvent;
+import javax.servlet.ServletRequestListener;
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 代替spring.jpa.show-sql，只记录有问题的SQL：
+ * 执行时间超过account.sql.slow-threshold-ms毫秒的语句记为慢查询；
+ * 一次请求中同一条语句执行account.sql.n-plus-one-threshold次以上时，记为可能的N+1查询（例如逐条加载关联对象）。
+ * 语句由连接池拦截器AccountSqlInterceptor上报，日志经logback-spring.xml中的异步appender输出，不阻塞请求线程。
+ * 每次请求执行的语句数发布到/manage/metrics：sql.statements-per-request.*
+ */
+@Component
+public class AccountSqlStatistics implements PublicMetrics, ServletRequestListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountSqlStatistics.class);
+
+    private static final String ATTRIBUTE = AccountSqlStatistics.class.getName() + ".statements";
+    private static final int MAX_DISTINCT_STATEMENTS = 64; // 每次请求最多分别统计的语句数
+    private static final long HIGHEST_TRACKABLE_STATEMENTS = 10000;
+
+    private static volatile AccountSqlStatistics current; // 拦截器由连接池按类名创建，通过静态字段找到统计对象
+
+    private final long slowThresholdMillis;
+    private final int nPlusOneThreshold;
+
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder slowStatements = new LongAdder();
+    private final LongAdder nPlusOneRequests = new LongAdder();
+
+    private final Recorder statementsPerRequest = new Recorder(1, HIGHEST_TRACKABLE_STATEMENTS, 2);
+    private final Histogram total = new Histogram(1, HIGHEST_TRACKABLE_STATEMENTS, 2);
+    private Histogram interval; // 发布时复用，由metrics()在锁内访问
+
+    public AccountSqlStatistics(@Value("${account.sql.slow-threshold-ms:200}") long slowThresholdMillis,
+                                @Value("${account.sql.n-plus-one-threshold:5}") int nPlusOneThreshold) {
+        this.slowThresholdMillis = slowThresholdMillis;
+        this.nPlusOneThreshold = nPlusOneThreshold;
+        current = this;
+    }
+
+    /**
+     * 由AccountSqlInterceptor在每条语句执行后调用
+     */
+    static void statement(String sql, long millis) {
+        AccountSqlStatistics statistics = current;
+        if (statistics != null)
+            statistics.record(sql != null ? sql : "", millis);
+    }
+
+    private void record(String sql, long millis) {
+        statements.increment();
+        if (millis >= slowThresholdMillis) {
+            slowStatements.increment();
+            logger.warn("慢查询，耗时{}ms：{}", millis, sql);
+        }
+
+        RequestStatements request = currentRequest();
+        if (request != null)
+            request.add(sql);
+    }
+
+    /**
+     * 当前线程正在处理的请求，AccountExecutor中执行时也能取到。请求的处理已经交给其他线程时，
+     * ServletRequestAttributes不再允许读取属性，所以直接从ServletRequest读取
+     */
+    private static RequestStatements currentRequest() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes))
+            return null; // 启动、定时任务等不在请求中执行的语句
+        return (RequestStatements) ((ServletRequestAttributes) attributes).getRequest().getAttribute(ATTRIBUTE);
+    }
+
+    @Override
+    public void requestInitialized(ServletRequestEvent event) {
+        event.getServletRequest().setAttribute(ATTRIBUTE, new RequestStatements());
+    }
+
+    @Override
+    public void requestDestroyed(ServletRequestEvent event) { // 异步请求在处理完成后才调用
+        ServletRequest request = event.getServletRequest();
+        RequestStatements statements = (RequestStatements) request.getAttribute(ATTRIBUTE);
+        if (statements == null)
+            return;
+
+        statementsPerRequest.recordValue(Math.min(statements.count, HIGHEST_TRACKABLE_STATEMENTS));
+        Map.Entry<String, Integer> repeated = statements.mostRepeated();
+        if (repeated != null && repeated.getValue() >= nPlusOneThreshold) {
+            nPlusOneRequests.increment();
+            HttpServletRequest http = (HttpServletRequest) request;
+            logger.warn("{} {}中同一条SQL执行了{}次，可能是N+1查询：{}",
+                    http.getMethod(), http.getRequestURI(), repeated.getValue(), repeated.getKey());
+        }
+    }
+
+    @Override
+    public synchronized Collection<Metric<?>> metrics() {
+        interval = statementsPerRequest.getIntervalHistogram(interval);
+        total.add(interval);
+
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<Number>("sql.statements", statements.sum()));
+        metrics.add(new Metric<Number>("sql.slow", slowStatements.sum()));
+        metrics.add(new Metric<Number>("sql.n-plus-one", nPlusOneRequests.sum()));
+        metrics.add(new Metric<Number>("sql.statements-per-request.count", total.getTotalCount()));
+        metrics.add(new Metric<Number>("sql.statements-per-request.mean", total.getMean()));
+        metrics.add(new Metric<Number>("sql.statements-per-request.p99", total.getValueAtPercentile(99)));
+        metrics.add(new Metric<Number>("sql.statements-per-request.max", total.getMaxValue()));
+        return metrics;
+    }
+
+    /**
+     * 一次请求执行的语句，同一个请求在AccountExecutor中执行时也只会有一个线程同时访问，加锁没有竞争
+     */
+    private static final class RequestStatements {
+
+        private int count;
+        private final Map<String, Integer> counts = new HashMap<>();
+
+        synchronized void add(String sql) {
+            count++;
+            if (counts.containsKey(sql) || counts.size() < MAX_DISTINCT_STATEMENTS)
+                counts.merge(sql, 1, Integer::sum);
+        }
+
+        synchronized Map.Entry<String, Integer> mostRepeated() {
+            Map.Entry<String, Integer> most = null;
+            for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+                if (most == null || entry.getValue() > most.getValue())
+                    most = entry;
+            }
+            return most;
+        }
+
+    }
+
+}
@@ -1,12 +1,19 @@
 package com.example;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 /**
  * Created by sunxiaopeng on 2016/11/21.
@@ -23,8 +30,16 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter { // 1
                 .authorizeRequests()
                 .antMatchers("/api/accounts/add").anonymous() // 4
                 .antMatchers("/api/accounts/me").hasAuthority("USER") // 5
-                .antMatchers("/api/accounts/", "/api/accounts/{username}", "/api/accounts/update").hasAuthority("ADMIN") // 6
+                .antMatchers("/api/accounts/", "/api/accounts/batch", "/api/accounts/export", "/api/accounts/{username}", "/api/accounts/update").hasAuthority("ADMIN") // 6
+                .antMatchers("/manage/**").hasAuthority("ADMIN")
                 ;
+
+        if (stateless) {
+            http
+                    .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS).and() // 不创建HttpSession，SecurityContext只在本次请求中
+                    .addFilterAfter(new AccountSessionTokenFilter(accountSessionTokens), BasicAuthenticationFilter.class)
+            ;
+        }
     }
 
 //    @Autowired
@@ -38,9 +53,30 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter { // 1
 
     @Autowired
     private AccountUserDetailsService accountUserDetailsService; // 9
+
+    @Autowired
+    private AccountAuthenticationCache accountAuthenticationCache;
+
+    @Autowired
+    private AccountSessionTokens accountSessionTokens;
+
+    @Value("${account.security.stateless:false}")
+    private boolean stateless;
+
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth.userDetailsService(accountUserDetailsService);
+        DaoAuthenticationProvider daoAuthenticationProvider = new DaoAuthenticationProvider();
+        daoAuthenticationProvider.setUserDetailsService(accountUserDetailsService);
+        daoAuthenticationProvider.afterPropertiesSet();
+        auth.authenticationProvider(new AccountAuthenticationProvider(daoAuthenticationProvider, accountAuthenticationCache));
+    }
+
+    @Bean
+    public FilterRegistrationBean accountRateLimitFilter(AccountRateLimiter accountRateLimiter, SecurityProperties securityProperties) {
+        FilterRegistrationBean registration = new FilterRegistrationBean(new AccountRateLimitFilter(accountRateLimiter));
+        registration.setOrder(securityProperties.getFilterOrder() - 1); // 在springSecurityFilterChain之前，被限流的请求不会进入认证
+        registration.setEnabled(accountRateLimiter.isEnabled());
+        return registration;
     }
 
 }
@@ -0,0 +1,85 @@
+package com.example;
+
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import javax.sql.DataSource;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 撤销记录保存在内存数据库中，同一个数据库上的多个AccountSessionRevocations相当于多个实例或重启后的实例
+ */
+public class AccountSessionTokensTests {
+
+	private final DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:session-revocations;DB_CLOSE_DELAY=-1", "sa", "");
+
+	private final AccountSessionTokens tokens = tokens(900, "");
+
+	@Test
+	public void issuedTokenCarriesUsernameAndAuthorities() {
+		String token = tokens.issue(authentication("zhangsan", "USER", "ADMIN"));
+
+		Authentication verified = tokens.verify(token);
+		assertNotNull(verified);
+		assertEquals("zhangsan", verified.getName());
+		assertEquals(AuthorityUtils.authorityListToSet(AuthorityUtils.createAuthorityList("USER", "ADMIN")),
+				AuthorityUtils.authorityListToSet(verified.getAuthorities()));
+		assertEquals("zhangsan", AccountSessionTokens.username(token));
+	}
+
+	@Test
+	public void tamperedOrForeignTokensAreRejected() {
+		String token = tokens.issue(authentication("zhangsan", "USER"));
+
+		assertNull(tokens.verify(token.replace(".USER.", ".ADMIN.")));
+		assertNull(tokens.verify(token + "x"));
+		assertNull(tokens.verify("not-a-token"));
+		assertNull(tokens(900, "").verify(token)); // 其他密钥签发
+	}
+
+	@Test
+	public void expiredAndRevokedTokensAreRejected() {
+		AccountSessionTokens expiring = tokens(0, "");
+		assertNull(expiring.verify(expiring.issue(authentication("lisi", "USER"))));
+
+		String token = tokens.issue(authentication("lisi", "USER"));
+		tokens.revoke("lisi");
+		assertNull(tokens.verify(token));
+	}
+
+	@Test
+	public void revocationsAreSharedAndSurviveRestart() {
+		byte[] key = new byte[32];
+		new SecureRandom().nextBytes(key);
+		String secret = Base64.getEncoder().encodeToString(key);
+		AccountSessionRevocations otherRevocations = new AccountSessionRevocations(dataSource, true, 900);
+		AccountSessionTokens instance = tokens(900, secret);
+		AccountSessionTokens other = new AccountSessionTokens(true, 900, secret, otherRevocations);
+
+		String token = instance.issue(authentication("wangwu", "USER"));
+		assertNotNull(other.verify(token));
+
+		instance.revoke("wangwu");
+		assertNull(instance.verify(token));
+		otherRevocations.sync(); // 定时读回其他实例的撤销记录
+		assertNull(other.verify(token));
+		assertNull(tokens(900, secret).verify(token)); // 重启后启动时加载
+	}
+
+	private AccountSessionTokens tokens(long ttlSeconds, String secret) {
+		return new AccountSessionTokens(true, ttlSeconds, secret, new AccountSessionRevocations(dataSource, true, ttlSeconds));
+	}
+
+	private static Authentication authentication(String username, String... authorities) {
+		return new UsernamePasswordAuthenticationToken(username, null, AuthorityUtils.createAuthorityList(authorities));
+	}
+
+}